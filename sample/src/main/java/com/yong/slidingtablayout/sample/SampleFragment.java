@@ -2,7 +2,6 @@ package com.yong.slidingtablayout.sample;
 
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
-import android.support.v4.view.PagerAdapter;
 import android.support.v4.view.ViewPager;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -10,6 +9,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
+import com.yong.slidingtablayout.RecyclingPagerAdapter;
 import com.yong.slidingtablayout.SlidingTabLayout;
 
 
@@ -68,38 +68,35 @@ public class SampleFragment extends Fragment {
         mViewPager.setCurrentItem(2);
     }
 
-    class SamplePagerAdapter extends PagerAdapter {
+    class SamplePagerAdapter extends RecyclingPagerAdapter {
 
         @Override
         public int getCount() {
             return 10;
         }
 
-        @Override
-        public boolean isViewFromObject(View view, Object o) {
-            return o == view;
-        }
-
         @Override
         public CharSequence getPageTitle(int position) {
             return "Item " + (position + 1);
         }
 
         @Override
-        public Object instantiateItem(ViewGroup container, int position) {
-            View view = getActivity().getLayoutInflater().inflate(R.layout.pager_item,
+        protected View onCreatePageView(ViewGroup container, int viewType) {
+            Log.i(LOG_TAG, "onCreatePageView()");
+            return getActivity().getLayoutInflater().inflate(R.layout.pager_item,
                     container, false);
-            container.addView(view);
+        }
+
+        @Override
+        protected void onBindPageView(View view, int position) {
             TextView title = (TextView) view.findViewById(R.id.item_title);
             title.setText(String.valueOf(position + 1));
-            Log.i(LOG_TAG, "instantiateItem() [position: " + position + "]");
-            return view;
+            Log.i(LOG_TAG, "onBindPageView() [position: " + position + "]");
         }
 
         @Override
-        public void destroyItem(ViewGroup container, int position, Object object) {
-            container.removeView((View) object);
-            Log.i(LOG_TAG, "destroyItem() [position: " + position + "]");
+        protected void onUnbindPageView(View view, int position) {
+            Log.i(LOG_TAG, "onUnbindPageView() [position: " + position + "]");
         }
 
     }
@@ -0,0 +1,125 @@
+package com.yong.slidingtablayout.benchmark;
+
+import com.yong.slidingtablayout.TabMath;
+import com.yong.slidingtablayout.TabOffsetIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * <b>Project:</b> com.yong.slidingtablayout <br>
+ * <b>Description:</b> ViewPager滑动的时候每帧的计算 <br>
+ * 每次调用相当于一帧：tab的位置按固定的种子生成，每帧换一个tab和positionOffset，
+ * 数据是固定的，结果可以和提交的baseline对比
+ */
+@State(Scope.Thread)
+public class TabMathBenchmark {
+
+    private static final int GRADIENT_STEPS = 256;
+    private static final int OFFSET_COUNT = 64;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int tabCount;
+
+    private int[] mTabLefts;
+    private int[] mTabRights;
+    private float[] mOffsets;
+    private int[] mColors;
+    private int[] mGradientTable;
+    private TabOffsetIndex mOffsetIndex;
+
+    private int mFrame;
+    private int mPosition;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+        mTabLefts = new int[tabCount];
+        mTabRights = new int[tabCount];
+        final int[] widths = new int[tabCount];
+        int left = 0;
+        for (int i = 0; i < tabCount; i++) {
+            // 和普通的文字tab差不多的宽度
+            int width = 120 + random.nextInt(200);
+            widths[i] = width;
+            mTabLefts[i] = left;
+            mTabRights[i] = left + width;
+            left += width;
+        }
+        mOffsetIndex = new TabOffsetIndex();
+        mOffsetIndex.setWidths(widths, tabCount, 0);
+        mOffsets = new float[OFFSET_COUNT];
+        for (int i = 0; i < OFFSET_COUNT; i++) {
+            mOffsets[i] = random.nextFloat();
+        }
+        mColors = new int[]{0xFF3F51B5, 0x80FF4081, 0xFF009688, 0xC0FFC107};
+        mGradientTable = TabMath.gradientTable(mColors[0], mColors[1], GRADIENT_STEPS);
+    }
+
+    /**
+     * @return 这一帧的tab，保证后面还有一个tab
+     */
+    private int nextPosition() {
+        mFrame++;
+        if (tabCount > 1) {
+            mPosition = (mPosition + 7919) % (tabCount - 1);
+        }
+        return mPosition;
+    }
+
+    private float offset() {
+        return mOffsets[mFrame & (OFFSET_COUNT - 1)];
+    }
+
+    @Benchmark
+    public long indicatorInterpolation() {
+        final int position = nextPosition();
+        final float offset = offset();
+        int left = TabMath.lerp(mTabLefts[position], mTabLefts[position + 1], offset);
+        int right = TabMath.lerp(mTabRights[position], mTabRights[position + 1], offset);
+        return ((long) left << 32) | right;
+    }
+
+    @Benchmark
+    public int scrollTarget() {
+        final int position = nextPosition();
+        final int tabWidth = mTabRights[position] - mTabLefts[position];
+        final int extraOffset = TabMath.scrollOffset(tabWidth, offset());
+        return TabMath.scrollTarget(position, mTabLefts[position], extraOffset, 48);
+    }
+
+    /**
+     * 手动滑动之后根据scrollX找最近的tab
+     */
+    @Benchmark
+    public int scrollXToTab() {
+        final int position = nextPosition();
+        final int x = TabMath.lerp(mTabLefts[position], mTabRights[position], offset());
+        return mOffsetIndex.nearestIndex(x);
+    }
+
+    @Benchmark
+    public int indicatorColor() {
+        return TabMath.colorAt(mColors, nextPosition());
+    }
+
+    @Benchmark
+    public int blendArgb() {
+        final int position = nextPosition();
+        final int color = TabMath.colorAt(mColors, position);
+        final int nextColor = TabMath.colorAt(mColors, position + 1);
+        return TabMath.blendArgb(nextColor, color, offset());
+    }
+
+    @Benchmark
+    public int gradientTableLookup() {
+        nextPosition();
+        return mGradientTable[TabMath.gradientIndex(offset(), GRADIENT_STEPS)];
+    }
+
+}
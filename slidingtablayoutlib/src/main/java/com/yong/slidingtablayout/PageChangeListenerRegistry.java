@@ -0,0 +1,112 @@
+package com.yong.slidingtablayout;
+
+import android.support.v4.view.ViewPager;
+
+/**
+ * <b>Project:</b> com.yong.slidingtablayout <br>
+ * <b>Description:</b> OnPageChangeListener的集合 <br>
+ * 添加和删除的时候复制一份新的数组(copy-on-write)，分发的时候直接遍历当前的数组，
+ * 滑动过程中的每一次回调都不会产生新的对象，分发的过程中添加或者删除也是安全的。
+ * 和ViewPager不一样，同一个监听只会保存一次，重复添加的监听也只回调一次
+ */
+public class PageChangeListenerRegistry implements ViewPager.OnPageChangeListener {
+
+    private static final ViewPager.OnPageChangeListener[] EMPTY = new ViewPager.OnPageChangeListener[0];
+
+    private ViewPager.OnPageChangeListener[] mListeners = EMPTY;
+
+    /**
+     * 添加监听，同一个监听只会添加一次(ViewPager会重复添加)
+     *
+     * @return 是否添加成功，已经添加过的返回false
+     */
+    public boolean add(ViewPager.OnPageChangeListener listener) {
+        if (listener == null || indexOf(listener) >= 0) {
+            return false;
+        }
+        final ViewPager.OnPageChangeListener[] listeners = mListeners;
+        final ViewPager.OnPageChangeListener[] newListeners =
+                new ViewPager.OnPageChangeListener[listeners.length + 1];
+        System.arraycopy(listeners, 0, newListeners, 0, listeners.length);
+        newListeners[listeners.length] = listener;
+        mListeners = newListeners;
+        return true;
+    }
+
+    /**
+     * 删除监听
+     *
+     * @return 是否删除成功
+     */
+    public boolean remove(ViewPager.OnPageChangeListener listener) {
+        final int index = indexOf(listener);
+        if (index < 0) {
+            return false;
+        }
+        final ViewPager.OnPageChangeListener[] listeners = mListeners;
+        if (listeners.length == 1) {
+            mListeners = EMPTY;
+            return true;
+        }
+        final ViewPager.OnPageChangeListener[] newListeners =
+                new ViewPager.OnPageChangeListener[listeners.length - 1];
+        System.arraycopy(listeners, 0, newListeners, 0, index);
+        System.arraycopy(listeners, index + 1, newListeners, index, listeners.length - index - 1);
+        mListeners = newListeners;
+        return true;
+    }
+
+    public void clear() {
+        mListeners = EMPTY;
+    }
+
+    public int size() {
+        return mListeners.length;
+    }
+
+    public boolean isEmpty() {
+        return mListeners.length == 0;
+    }
+
+    /**
+     * @return 当前所有的监听，返回的数组不能修改
+     */
+    public ViewPager.OnPageChangeListener[] snapshot() {
+        return mListeners;
+    }
+
+    private int indexOf(ViewPager.OnPageChangeListener listener) {
+        final ViewPager.OnPageChangeListener[] listeners = mListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+        final ViewPager.OnPageChangeListener[] listeners = mListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].onPageScrolled(position, positionOffset, positionOffsetPixels);
+        }
+    }
+
+    @Override
+    public void onPageSelected(int position) {
+        final ViewPager.OnPageChangeListener[] listeners = mListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].onPageSelected(position);
+        }
+    }
+
+    @Override
+    public void onPageScrollStateChanged(int state) {
+        final ViewPager.OnPageChangeListener[] listeners = mListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].onPageScrollStateChanged(state);
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.yong.slidingtablayout;
+
+import android.support.v4.view.ViewPager;
+
+/**
+ * <b>Project:</b> com.yong.slidingtablayout <br>
+ * <b>Description:</b> 一个ViewPager驱动多个SlidingTabLayout <br>
+ * 每个ViewPager只添加一个监听，回调的时候记录下最新的(position, offset, state)，
+ * 然后分发给所有绑定的SlidingTabLayout。
+ * 不可见的SlidingTabLayout可以先不处理，重新可见的时候从这里取最新的状态
+ */
+public class PagerSyncHub implements ViewPager.OnPageChangeListener {
+
+    private final ViewPager mViewPager;
+
+    private final PageChangeListenerRegistry mClients = new PageChangeListenerRegistry();
+
+    private int mPosition;
+    private float mPositionOffset;
+    private int mPositionOffsetPixels;
+    private int mSelectedPosition;
+    private int mScrollState = ViewPager.SCROLL_STATE_IDLE;
+
+    private PagerSyncHub(ViewPager viewPager) {
+        mViewPager = viewPager;
+        mPosition = viewPager.getCurrentItem();
+        mSelectedPosition = mPosition;
+    }
+
+    /**
+     * 获取ViewPager对应的PagerSyncHub，没有的时候创建一个
+     */
+    public static PagerSyncHub obtain(ViewPager viewPager) {
+        PagerSyncHub hub = (PagerSyncHub) viewPager.getTag(R.id.sliding_tab_pager_sync_hub);
+        if (hub == null) {
+            hub = new PagerSyncHub(viewPager);
+            viewPager.setTag(R.id.sliding_tab_pager_sync_hub, hub);
+        }
+        return hub;
+    }
+
+    /**
+     * 绑定一个client，第一个client绑定的时候才给ViewPager添加监听
+     */
+    public void bind(ViewPager.OnPageChangeListener client) {
+        if (mClients.add(client) && mClients.size() == 1) {
+            mViewPager.addOnPageChangeListener(this);
+        }
+    }
+
+    /**
+     * 解除绑定，最后一个client解除的时候从ViewPager上删除监听
+     */
+    public void unbind(ViewPager.OnPageChangeListener client) {
+        if (mClients.remove(client) && mClients.isEmpty()) {
+            mViewPager.removeOnPageChangeListener(this);
+            mViewPager.setTag(R.id.sliding_tab_pager_sync_hub, null);
+        }
+    }
+
+    public ViewPager getViewPager() {
+        return mViewPager;
+    }
+
+    /**
+     * @return 最近一次onPageScrolled的position
+     */
+    public int getPosition() {
+        return mPosition;
+    }
+
+    /**
+     * @return 最近一次onPageScrolled的positionOffset
+     */
+    public float getPositionOffset() {
+        return mPositionOffset;
+    }
+
+    public int getPositionOffsetPixels() {
+        return mPositionOffsetPixels;
+    }
+
+    /**
+     * @return 最近一次onPageSelected的position
+     */
+    public int getSelectedPosition() {
+        return mSelectedPosition;
+    }
+
+    public int getScrollState() {
+        return mScrollState;
+    }
+
+    @Override
+    public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+        mPosition = position;
+        mPositionOffset = positionOffset;
+        mPositionOffsetPixels = positionOffsetPixels;
+        mClients.onPageScrolled(position, positionOffset, positionOffsetPixels);
+    }
+
+    @Override
+    public void onPageSelected(int position) {
+        mSelectedPosition = position;
+        if (mScrollState == ViewPager.SCROLL_STATE_IDLE) {
+            mPosition = position;
+            mPositionOffset = 0f;
+            mPositionOffsetPixels = 0;
+        }
+        mClients.onPageSelected(position);
+    }
+
+    @Override
+    public void onPageScrollStateChanged(int state) {
+        mScrollState = state;
+        mClients.onPageScrollStateChanged(state);
+    }
+
+}
@@ -0,0 +1,207 @@
+package com.yong.slidingtablayout;
+
+import android.support.v4.view.PagerAdapter;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+
+/**
+ * <b>Project:</b> com.yong.slidingtablayout <br>
+ * <b>Description:</b> 回收页面view的PagerAdapter <br>
+ * destroyItem的页面不直接丢掉，按view type放到缓存池里面，instantiateItem的时候优先从缓存池取出来重新绑定数据，
+ * 滑动很多页的时候不用每页都inflate一次。
+ * 配合{@link SlidingViewPager}使用的时候，空闲的时候提前准备的页面也从缓存池里面取
+ */
+public abstract class RecyclingPagerAdapter extends PagerAdapter implements SlidingViewPager.PrefetchAdapter {
+
+    /**
+     * 每种view type默认最多缓存的页面数量，ViewPager一次最多销毁offscreenPageLimit * 2 + 1个页面
+     */
+    private static final int DEFAULT_POOL_CAPACITY = 3;
+
+    /**
+     * 按view type缓存的已经移除的页面
+     */
+    private final SparseArray<ArrayList<View>> mScrapViews = new SparseArray<>();
+    private final SparseIntArray mPoolCapacities = new SparseIntArray();
+    private int mDefaultPoolCapacity = DEFAULT_POOL_CAPACITY;
+
+    /**
+     * 提前准备好的页面，key是position
+     */
+    private final SparseArray<View> mPrefetchedViews = new SparseArray<>();
+
+    private int mPoolHitCount;
+    private int mPoolMissCount;
+
+    /**
+     * 缓存池里面没有可以用的页面的时候调用，创建一个新的页面，不要添加到container里面
+     *
+     * @param viewType {@link #getItemViewType(int)}
+     */
+    protected abstract View onCreatePageView(ViewGroup container, int viewType);
+
+    /**
+     * 把position的数据绑定到页面上，页面可能是新创建的也可能是回收的
+     */
+    protected abstract void onBindPageView(View view, int position);
+
+    /**
+     * 页面放回缓存池之前调用，可以在这里释放图片、停止动画等
+     */
+    protected void onUnbindPageView(View view, int position) {
+    }
+
+    /**
+     * @return position的页面类型，只有类型一样的页面才会互相复用，默认都是0
+     */
+    public int getItemViewType(int position) {
+        return 0;
+    }
+
+    @Override
+    public Object instantiateItem(ViewGroup container, int position) {
+        View view = mPrefetchedViews.get(position);
+        if (view != null) {
+            mPrefetchedViews.remove(position);
+        } else {
+            view = obtainPageView(container, position);
+        }
+        container.addView(view);
+        return view;
+    }
+
+    @Override
+    public void destroyItem(ViewGroup container, int position, Object object) {
+        final View view = (View) object;
+        container.removeView(view);
+        recyclePageView(view, position);
+    }
+
+    @Override
+    public boolean isViewFromObject(View view, Object object) {
+        return view == object;
+    }
+
+    @Override
+    public void prefetchItem(ViewGroup container, int position) {
+        if (mPrefetchedViews.get(position) == null) {
+            mPrefetchedViews.put(position, obtainPageView(container, position));
+        }
+    }
+
+    @Override
+    public void cancelPrefetch(ViewGroup container, int position) {
+        final View view = mPrefetchedViews.get(position);
+        if (view != null) {
+            mPrefetchedViews.remove(position);
+            recyclePageView(view, position);
+        }
+    }
+
+    @Override
+    public void notifyDataSetChanged() {
+        // 提前准备的页面绑定的是旧数据
+        for (int i = mPrefetchedViews.size() - 1; i >= 0; i--) {
+            recyclePageView(mPrefetchedViews.valueAt(i), mPrefetchedViews.keyAt(i));
+        }
+        mPrefetchedViews.clear();
+        super.notifyDataSetChanged();
+    }
+
+    /**
+     * 从缓存池取一个页面并绑定数据，没有的时候创建一个
+     */
+    private View obtainPageView(ViewGroup container, int position) {
+        final int viewType = getItemViewType(position);
+        final ArrayList<View> scrap = mScrapViews.get(viewType);
+        View view;
+        if (scrap != null && !scrap.isEmpty()) {
+            view = scrap.remove(scrap.size() - 1);
+            mPoolHitCount++;
+        } else {
+            view = onCreatePageView(container, viewType);
+            view.setTag(R.id.sliding_page_view_type, viewType);
+            mPoolMissCount++;
+        }
+        onBindPageView(view, position);
+        return view;
+    }
+
+    /**
+     * 解绑页面，缓存池没有满的时候放进去
+     */
+    private void recyclePageView(View view, int position) {
+        onUnbindPageView(view, position);
+        final Object tag = view.getTag(R.id.sliding_page_view_type);
+        final int viewType = tag instanceof Integer ? (Integer) tag : getItemViewType(position);
+        ArrayList<View> scrap = mScrapViews.get(viewType);
+        if (scrap == null) {
+            scrap = new ArrayList<>();
+            mScrapViews.put(viewType, scrap);
+        }
+        if (scrap.size() < getPoolCapacity(viewType)) {
+            scrap.add(view);
+        }
+    }
+
+    /**
+     * 设置某种view type最多缓存的页面数量，设置成0的时候这种页面不回收
+     */
+    public void setPoolCapacity(int viewType, int capacity) {
+        mPoolCapacities.put(viewType, capacity);
+        trimPool(viewType, capacity);
+    }
+
+    /**
+     * 设置没有单独设置过的view type最多缓存的页面数量，默认3
+     */
+    public void setDefaultPoolCapacity(int capacity) {
+        mDefaultPoolCapacity = capacity;
+        for (int i = 0; i < mScrapViews.size(); i++) {
+            final int viewType = mScrapViews.keyAt(i);
+            trimPool(viewType, getPoolCapacity(viewType));
+        }
+    }
+
+    public int getPoolCapacity(int viewType) {
+        return mPoolCapacities.get(viewType, mDefaultPoolCapacity);
+    }
+
+    private void trimPool(int viewType, int capacity) {
+        final ArrayList<View> scrap = mScrapViews.get(viewType);
+        while (scrap != null && scrap.size() > Math.max(capacity, 0)) {
+            scrap.remove(scrap.size() - 1);
+        }
+    }
+
+    /**
+     * 清空缓存池，比如页面的样式变了，之前的页面不能再用的时候
+     */
+    public void clearPool() {
+        mScrapViews.clear();
+    }
+
+    /**
+     * @return 从缓存池取到页面的次数
+     */
+    public int getPoolHitCount() {
+        return mPoolHitCount;
+    }
+
+    /**
+     * @return 缓存池是空的，调用{@link #onCreatePageView(ViewGroup, int)}创建页面的次数
+     */
+    public int getPoolMissCount() {
+        return mPoolMissCount;
+    }
+
+    public void resetPoolCounters() {
+        mPoolHitCount = 0;
+        mPoolMissCount = 0;
+    }
+
+}
@@ -19,28 +19,53 @@ package com.yong.slidingtablayout;
 import android.content.Context;
 import android.content.res.ColorStateList;
 import android.content.res.TypedArray;
+import android.database.DataSetObserver;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Process;
+import android.os.Trace;
 import android.support.v4.view.PagerAdapter;
+import android.support.v4.view.ViewCompat;
 import android.support.v4.view.ViewPager;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.support.v4.widget.ExploreByTouchHelper;
 import android.text.TextPaint;
+import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.util.SparseArray;
 import android.util.TypedValue;
 import android.view.Gravity;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.accessibility.AccessibilityEvent;
 import android.widget.HorizontalScrollView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * To be used with ViewPager to provide a tab indicator component which give constant feedback as to
@@ -60,6 +85,50 @@ import java.util.List;
  */
 public class SlidingTabLayout extends HorizontalScrollView {
 
+    /**
+     * {@link #setBadge(int, int)}只显示一个点，不显示数字
+     */
+    public static final int BADGE_DOT = -1;
+
+    /**
+     * 虚拟化的时候可见区域前后各多创建几个tab
+     */
+    private static final int VIRTUAL_OFFSCREEN_TABS = 2;
+    /**
+     * 虚拟化的时候最多缓存多少个回收的tab view
+     */
+    private static final int VIRTUAL_MAX_RECYCLED_VIEWS = 16;
+    /**
+     * 虚拟化的时候没有测量过的tab按这么多个字估算宽度
+     */
+    private static final int VIRTUAL_ESTIMATED_TAB_TEXT_LENGTH = 4;
+    /**
+     * 异步inflate的时候每次添加到tab strip上的tab数量
+     */
+    private static final int ASYNC_INFLATE_BATCH_SIZE = 8;
+    /**
+     * 延迟创建tab的时候，主线程每次空闲创建的tab数量
+     */
+    private static final int LAZY_POPULATE_BATCH_SIZE = 4;
+    /**
+     * 手动滑动tab之后，每隔这么久检查一次是否已经停下来，停下来之后再对齐到tab
+     */
+    private static final int SNAP_CHECK_INTERVAL_MS = 50;
+    /**
+     * flat模式下从tab_text_color里面取颜色的几种状态
+     */
+    private static final int[] FLAT_STATE_NORMAL = {android.R.attr.state_enabled};
+    private static final int[] FLAT_STATE_SELECTED = {android.R.attr.state_enabled, android.R.attr.state_selected};
+    private static final int[] FLAT_STATE_PRESSED = {android.R.attr.state_enabled, android.R.attr.state_pressed};
+    private static final int[] FLAT_STATE_SELECTED_PRESSED = {android.R.attr.state_enabled,
+            android.R.attr.state_selected, android.R.attr.state_pressed};
+
+    /**
+     * 异步inflate tab和预先测量标题的线程，所有的SlidingTabLayout共用一个
+     */
+    private static ExecutorService sTabBackgroundExecutor;
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
     /**
      * 调用者自定义的Tab的Layout
      */
@@ -79,11 +148,59 @@ public class SlidingTabLayout extends HorizontalScrollView {
      */
     protected boolean mTabDistributeColEvenly = false;
 
+    /**
+     * 每个tab固定的宽度，0表示按内容的宽度，默认0
+     */
+    protected int mTabFixedWidth = 0;
+
     /**
      * 是否平滑的滑动，默认true
      */
     protected boolean mTabViewPagerSmoothScroll = true;
 
+    /**
+     * 是否只创建可见区域内的tab(虚拟化)，默认false
+     * tab数量非常多的时候使用，滑动的时候tab view会被回收复用
+     */
+    protected boolean mTabVirtualized = false;
+
+    /**
+     * 是否把一帧之内多次的onPageScrolled合并成一次tab的滑动和indicator的刷新，默认false
+     */
+    protected boolean mTabFrameCoalescing = false;
+
+    /**
+     * 是否把border和分割线录制成一个Picture缓存起来，每帧只画一次缓存和indicator，默认false。
+     * 主要对软件绘制有用
+     */
+    protected boolean mTabStaticLayerCache = false;
+
+    /**
+     * 相邻两个tab的indicator颜色不同的时候，是否使用预先计算好的渐变表，默认true
+     */
+    protected boolean mTabIndicatorGradientTable = true;
+
+    /**
+     * 使用自定义的tab的时候，是否在后台线程inflate，默认false
+     */
+    protected boolean mTabAsyncInflate = false;
+
+    /**
+     * 是否先只创建当前页面附近可见的tab，剩下的在主线程空闲的时候分批创建，默认false
+     */
+    protected boolean mTabLazyPopulate = false;
+
+    /**
+     * 手动滑动tab停下来之后是否对齐到最近的一个tab，默认false
+     */
+    protected boolean mTabSnapToTab = false;
+
+    /**
+     * 是否不创建tab view，标题直接画在tab strip上(flat模式)，默认false。
+     * 只对默认的文字tab生效，设置了{@link #setCustomTabView(int, int)}的时候忽略
+     */
+    protected boolean mTabFlat = false;
+
     /**
      * 文字的大小颜色
      */
@@ -134,6 +251,14 @@ public class SlidingTabLayout extends HorizontalScrollView {
     protected int mTabDividerStroke = 0;
     protected float mTabDividerHeightRatio = 0.5F;
 
+    /**
+     * Badge的背景颜色、文字颜色、文字大小，以及最多显示的数字
+     */
+    protected int mTabBadgeColor = 0xFFF44336;
+    protected int mTabBadgeTextColor = Color.WHITE;
+    protected int mTabBadgeTextSize = 20;
+    protected int mTabBadgeMaxCount = 99;
+
     /**
      * tab里面TextView的padding
      */
@@ -143,6 +268,11 @@ public class SlidingTabLayout extends HorizontalScrollView {
     protected int mTabTextPaddingRight = mTabTextPadding;
     protected int mTabTextPaddingBottom = mTabTextPadding;
 
+    /**
+     * 解析好的style，tab的Typeface和背景直接从这里取
+     */
+    protected TabStyle mTabStyle;
+
     /**
      * ViewPager
      */
@@ -158,10 +288,168 @@ public class SlidingTabLayout extends HorizontalScrollView {
      * 使用
      * {@link #addOnPageChangeListener(ViewPager.OnPageChangeListener)}
      * 替换
-     * {@link ViewPager#addOnPageChangeListener(ViewPager.OnPageChangeListener)}
+     * {@link ViewPager#addOnPageChangeListener(ViewPager.OnPageChangeListener)}。
+     * 分发的时候使用快照，只能通过这几个方法修改
      */
     protected List<ViewPager.OnPageChangeListener> mViewPagerPageChangeListeners = new ArrayList<>();
 
+    /**
+     * mViewPagerPageChangeListeners的快照，每次添加、删除之后重新生成，分发的时候遍历快照。
+     * 回调里面添加或者删除监听不会影响这一次分发，滑动的时候也不会分配对象
+     */
+    private ViewPager.OnPageChangeListener[] mPageChangeListenerSnapshot = new ViewPager.OnPageChangeListener[0];
+
+    /**
+     * 绑定到ViewPager的PagerSyncHub上的监听，换ViewPager或者从window上移除的时候会解除绑定。
+     * 同一个ViewPager的多个SlidingTabLayout共用一个PagerSyncHub，ViewPager上只有一个监听
+     */
+    private final InternalViewPagerListener mPageChangeListener = new InternalViewPagerListener();
+    private PagerSyncHub mPagerSyncHub;
+
+    /**
+     * 不可见的时候不更新tab和indicator，重新可见的时候再从PagerSyncHub同步
+     */
+    private boolean mTabSyncVisible = true;
+    private boolean mTabSyncStale;
+
+    /**
+     * tab重新创建之后还没有layout，选中的tab、indicator和滑动位置在layout之后统一设置一次，
+     * 在这之前ViewPager的回调不更新tab
+     */
+    private boolean mInitialStatePending;
+
+    /**
+     * 当前tab上显示的标题，adapter数据变化的时候用来和新的标题做diff
+     */
+    protected final List<CharSequence> mTabTitles = new ArrayList<>();
+
+    /**
+     * 监听adapter的notifyDataSetChanged
+     */
+    private final DataSetObserver mAdapterObserver = new TabAdapterObserver();
+    private PagerAdapter mObservedAdapter;
+
+    /**
+     * 合并一帧之内的onPageScrolled，只记录最后一次的position和offset
+     */
+    private int mPendingScrollPosition;
+    private float mPendingScrollOffset;
+    private boolean mScrollFramePending;
+    private long mCoalescedScrollUpdateCount;
+    /**
+     * 异步inflate的批次，重新populate的时候加一，之前还没有完成的批次会被丢弃
+     */
+    private volatile int mAsyncPopulateGeneration;
+    /**
+     * 异步inflate或者延迟创建的tab还没有全部完成
+     */
+    private boolean mAsyncPopulating;
+    /**
+     * 延迟创建的时候左边下一个要创建的tab，右边下一个要创建的tab
+     */
+    private int mLazyNextLeft;
+    private int mLazyNextRight;
+    /**
+     * 延迟创建还没有完成，detach的时候暂停，重新attach的时候继续
+     */
+    private boolean mLazyPopulating;
+    private boolean mLazyPopulateScheduled;
+
+    private final MessageQueue.IdleHandler mLazyPopulateHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            mLazyPopulateScheduled = populateLazyBatch();
+            return mLazyPopulateScheduled;
+        }
+    };
+
+    /**
+     * 当前是selected状态的tab，切换页面的时候只更新这个tab和新选中的tab
+     */
+    private int mSelectedTabPosition = -1;
+
+    /**
+     * 性能数据的回调，null的时候不计时也不计数
+     */
+    private TabLayoutMetrics mTabLayoutMetrics;
+    private long mPopulateStartNanos;
+    private long mSetViewPagerNanos;
+    private boolean mFirstDrawPending;
+    private long mScrollSessionStartNanos;
+    private int mScrollSessionPageScrolledCount;
+    private int mScrollSessionScrollToCount;
+
+    /**
+     * 是否在systrace里面标记populateTabStrip、onDraw和onPageScrolled，默认false
+     */
+    protected boolean mTabTraceEnabled = false;
+    private TextPaint mTabEstimatePaint;
+    private OnTabsPopulatedListener mOnTabsPopulatedListener;
+
+    /**
+     * 可见的第一个和最后一个tab，查询的时候复用
+     */
+    private final int[] mVisibleTabRange = new int[2];
+    private int mSnapLastScrollX;
+
+    private final Runnable mSnapRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final int scrollX = getScrollX();
+            if (scrollX != mSnapLastScrollX) {
+                // 还在fling，等停下来
+                mSnapLastScrollX = scrollX;
+                postDelayed(this, SNAP_CHECK_INTERVAL_MS);
+                return;
+            }
+            if (mPageChangeListener.mScrollState == ViewPager.SCROLL_STATE_IDLE) {
+                snapToNearestTab();
+            }
+        }
+    };
+
+    private final Runnable mScrollFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mScrollFramePending = false;
+            applyPageScrolled(mPendingScrollPosition, mPendingScrollOffset);
+        }
+    };
+
+    private final TabPressListener mTabPressListener = new TabPressListener();
+
+    /**
+     * setBadge写入的数字，任何线程都可以写，主线程每一帧统一取一次交给tab strip
+     */
+    private final Object mBadgeLock = new Object();
+    private int[] mPendingBadges = new int[0];
+    private boolean mBadgeFramePending;
+    /**
+     * 当前tab的数量，超出的position设置badge直接忽略
+     */
+    private int mBadgeTabCount;
+    /**
+     * 主线程上从mPendingBadges复制出来的数字，只在主线程使用
+     */
+    private int[] mBadgeFrame = new int[0];
+
+    private final Runnable mBadgeFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            applyPendingBadges();
+        }
+    };
+
+    /**
+     * 其他线程调用setBadge的时候先回到主线程，再等下一帧
+     */
+    private final Runnable mBadgeScheduleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            ViewCompat.postOnAnimation(SlidingTabLayout.this, mBadgeFrameRunnable);
+        }
+    };
+
     /**
      * SlidingTabLayout 里面的LinerLayout，这里放置TextView，以及画一些其他的东西
      */
@@ -181,101 +469,247 @@ public class SlidingTabLayout extends HorizontalScrollView {
         setHorizontalScrollBarEnabled(false);
         // Make sure that the Tab Strips fills this View
         setFillViewport(true);
-        // style初始化
-        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.YSlidingTabLayout, defStyle, 0);
-        initStyle(a);
-        a.recycle();
+        // style初始化，同一个theme下同样的style和属性只解析一次
+        initStyle(TabStyle.obtain(context, attrs, defStyle));
 
         mTabStrip = new SlidingTabStrip(context);
         // 添加LinerLayout
         addView(mTabStrip, LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
     }
 
-    protected void initStyle(TypedArray a) {
-        // 最后一个参数可以设置一个style，为这些属性设置默认值，这个参数就是style的名字
-        // 倒数第二个参数它是一个引用类型的属性，指向一个style，并且在当前的theme中进行设置
-        // 优先级defStyleAttr高，也就是第三个参数高
+    /**
+     * 构造的时候不会调用这个方法，不能再重写，子类读取额外的属性改成在自己的构造方法里面读取
+     *
+     * @deprecated 使用{@link #initStyle(TabStyle)}，属性在{@link TabStyle}里面解析
+     */
+    @Deprecated
+    protected final void initStyle(TypedArray a) {
+        initStyle(TabStyle.from(getContext(), a));
+    }
+
+    protected void initStyle(TabStyle style) {
+        mTabStyle = style;
 
-        mTabTitleOffset = a.getDimensionPixelOffset(R.styleable.YSlidingTabLayout_tab_title_offset,
-                dp2px(mTabTitleOffset));
-        mTabDistributeColEvenly = a.getBoolean(R.styleable.YSlidingTabLayout_tab_distribut_col_evenly,
-                mTabDistributeColEvenly);
-        mTabViewPagerSmoothScroll = a.getBoolean(R.styleable.YSlidingTabLayout_tab_view_pager_smooth_scroll,
-                mTabViewPagerSmoothScroll);
+        mTabTitleOffset = style.titleOffset;
+        mTabDistributeColEvenly = style.distributeColEvenly;
+        mTabFixedWidth = style.fixedWidth;
+        mTabViewPagerSmoothScroll = style.viewPagerSmoothScroll;
+        mTabVirtualized = style.virtualized;
+        mTabFrameCoalescing = style.frameCoalescing;
+        mTabStaticLayerCache = style.staticLayerCache;
+        mTabIndicatorGradientTable = style.indicatorGradientTable;
+        mTabSnapToTab = style.snapToTab;
+        mTabFlat = style.flat;
 
         // TextView
-        mTabTextTypeface = a.getInt(R.styleable.YSlidingTabLayout_tab_text_type_face, 0);
-        mTabTextSize = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_text_size,
-                sp2px(mTabTextSize));
-        mTabTextColor = a.hasValue(R.styleable.YSlidingTabLayout_tab_text_color) ?
-                a.getColorStateList(R.styleable.YSlidingTabLayout_tab_text_color) : mTabTextColor;
+        mTabTextTypeface = style.textTypeface;
+        mTabTextSize = style.textSize;
+        mTabTextColor = style.textColor;
 
         // Border
-        TypedValue outValue = new TypedValue();
-        getContext().getTheme().resolveAttribute(android.R.attr.colorForeground, outValue, true);
-        final int themeForegroundColor = outValue.data;
-        mTabTopBorderColor = a.getColor(R.styleable.YSlidingTabLayout_tab_top_border_color,
-                themeForegroundColor);
-        mTabTopBorderHeight = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_top_border_height,
-                dp2px(mTabTopBorderHeight));
-        mTabBottomBorderColor = a.getColor(R.styleable.YSlidingTabLayout_tab_bottom_border_color,
-                themeForegroundColor);
-        mTabBottomBorderHeight = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_bottom_border_height,
-                dp2px(mTabBottomBorderHeight));
+        mTabTopBorderColor = style.topBorderColor;
+        mTabTopBorderHeight = style.topBorderHeight;
+        mTabBottomBorderColor = style.bottomBorderColor;
+        mTabBottomBorderHeight = style.bottomBorderHeight;
 
         // Indicator
-        mTabTopIndicatorColor = a.getColor(R.styleable.YSlidingTabLayout_tab_top_indicator_color,
-                mTabTopIndicatorColor);
-        mTabTopIndicatorHeight = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_top_indicator_height,
-                dp2px(mTabTopIndicatorHeight));
-        mTabIndicatorPadding = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_indicator_padding,
-                dp2px(mTabIndicatorPadding));
-        mTabBottomIndicatorColor = a.getColor(R.styleable.YSlidingTabLayout_tab_bottom_indicator_color,
-                mTabBottomIndicatorColor);
-        mTabBottomIndicatorHeight = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_bottom_indicator_height,
-                dp2px(mTabBottomIndicatorHeight));
+        mTabTopIndicatorColor = style.topIndicatorColor;
+        mTabTopIndicatorHeight = style.topIndicatorHeight;
+        mTabIndicatorPadding = style.indicatorPadding;
+        mTabBottomIndicatorColor = style.bottomIndicatorColor;
+        mTabBottomIndicatorHeight = style.bottomIndicatorHeight;
 
         // TextView的Indicator
-        mTabTextIndicatorColor = a.getColor(R.styleable.YSlidingTabLayout_tab_text_indicator_color,
-                mTabTextIndicatorColor);
-        mTabTextIndicatorStroke = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_text_indicator_stroke,
-                dp2px(mTabTextIndicatorStroke));
-        mTabTextIndicatorPaddding = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_text_indicator_padding,
-                dp2px(mTabTextIndicatorPaddding));
+        mTabTextIndicatorColor = style.textIndicatorColor;
+        mTabTextIndicatorStroke = style.textIndicatorStroke;
+        mTabTextIndicatorPaddding = style.textIndicatorPadding;
 
         // Divider
-        mTabDividerColor = a.getColor(R.styleable.YSlidingTabLayout_tab_divider_color,
-                mTabDividerColor);
-        mTabDividerStroke = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_divider_stroke,
-                dp2px(mTabDividerStroke));
-        mTabDividerHeightRatio = a.getFloat(R.styleable.YSlidingTabLayout_tab_divider_heiht_ratio, mTabDividerHeightRatio);
+        mTabDividerColor = style.dividerColor;
+        mTabDividerStroke = style.dividerStroke;
+        mTabDividerHeightRatio = style.dividerHeightRatio;
+
+        // badge
+        mTabBadgeColor = style.badgeColor;
+        mTabBadgeTextColor = style.badgeTextColor;
+        mTabBadgeTextSize = style.badgeTextSize;
+        mTabBadgeMaxCount = style.badgeMaxCount;
 
         // padding
-        mTabTextPadding = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_text_padding,
-                dp2px(mTabTextPadding));
-        mTabTextPaddingLeft = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_text_padding_left,
-                mTabTextPadding);
-        mTabTextPaddingTop = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_text_padding_top,
-                mTabTextPadding);
-        mTabTextPaddingRight = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_text_padding_right,
-                mTabTextPadding);
-        mTabTextPaddingBottom = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_text_padding_bottom,
-                mTabTextPadding);
+        mTabTextPadding = style.textPadding;
+        mTabTextPaddingLeft = style.textPaddingLeft;
+        mTabTextPaddingTop = style.textPaddingTop;
+        mTabTextPaddingRight = style.textPaddingRight;
+        mTabTextPaddingBottom = style.textPaddingBottom;
     }
 
     /**
-     * Sets the associated view pager. Note that the assumption here is that the pager content
-     * (number of tabs and tab titles) does not change after this call has been made.
+     * Sets the associated view pager. Changes of the pager content (number of tabs and tab titles)
+     * are picked up from {@link PagerAdapter#notifyDataSetChanged()} and only the affected tabs
+     * are updated. If the pager gets a new adapter, call this method again.
      */
     public void setViewPager(ViewPager viewPager) {
+        mLazyPopulating = false;
+        unscheduleLazyPopulate();
         mTabStrip.removeAllViews();
+        mTabTitles.clear();
+        unbindViewPager();
         mViewPager = viewPager;
         if (viewPager != null) {
-            viewPager.addOnPageChangeListener(new InternalViewPagerListener());
+            mFirstDrawPending = mTabLayoutMetrics != null;
+            if (mFirstDrawPending) {
+                mSetViewPagerNanos = System.nanoTime();
+            }
+            bindViewPager();
             populateTabStrip();
         }
     }
 
+    /**
+     * 给ViewPager和adapter添加监听，不会重复添加
+     */
+    private void bindViewPager() {
+        if (mPagerSyncHub != null || mViewPager == null) {
+            return;
+        }
+        mPagerSyncHub = PagerSyncHub.obtain(mViewPager);
+        mPagerSyncHub.bind(mPageChangeListener);
+        observeAdapter(mViewPager.getAdapter());
+    }
+
+    /**
+     * 从ViewPager和adapter上删除监听
+     */
+    private void unbindViewPager() {
+        if (mPagerSyncHub != null) {
+            mPagerSyncHub.unbind(mPageChangeListener);
+            mPagerSyncHub = null;
+        }
+        observeAdapter(null);
+    }
+
+    private void observeAdapter(PagerAdapter adapter) {
+        if (mObservedAdapter == adapter) {
+            return;
+        }
+        if (mObservedAdapter != null) {
+            mObservedAdapter.unregisterDataSetObserver(mAdapterObserver);
+        }
+        mObservedAdapter = adapter;
+        if (adapter != null) {
+            adapter.registerDataSetObserver(mAdapterObserver);
+        }
+    }
+
+    /**
+     * adapter的数据变化了，和之前的标题做diff，只更新变化的tab
+     */
+    protected void onAdapterDataSetChanged() {
+        if (mViewPager == null) {
+            return;
+        }
+        final PagerAdapter adapter = mViewPager.getAdapter();
+        if (mLazyPopulating && adapter == mObservedAdapter && !titlesChanged(adapter)) {
+            // 延迟创建的时候标题没有变化(比如重新attach)，继续创建剩下的tab
+            scheduleLazyPopulate();
+            return;
+        }
+        if (adapter != mObservedAdapter || mAsyncPopulating) {
+            // adapter被换掉了，或者异步populate还没有完成(包括detach的时候被取消的)，全部重新创建
+            mTabStrip.removeAllViews();
+            observeAdapter(adapter);
+            if (adapter != null) {
+                populateTabStrip();
+            } else {
+                mTabTitles.clear();
+                setBadgeTabCount(0);
+            }
+            return;
+        }
+
+        final List<CharSequence> oldTitles = new ArrayList<>(mTabTitles);
+        final int oldCount = oldTitles.size();
+        final int newCount = adapter.getCount();
+        final List<CharSequence> newTitles = new ArrayList<>(newCount);
+        for (int i = 0; i < newCount; i++) {
+            newTitles.add(adapter.getPageTitle(i));
+        }
+
+        // 去掉前后相同的部分，剩下[start, oldEnd)变成了[start, newEnd)
+        int start = 0;
+        while (start < oldCount && start < newCount
+                && TextUtils.equals(oldTitles.get(start), newTitles.get(start))) {
+            start++;
+        }
+        int oldEnd = oldCount;
+        int newEnd = newCount;
+        while (oldEnd > start && newEnd > start
+                && TextUtils.equals(oldTitles.get(oldEnd - 1), newTitles.get(newEnd - 1))) {
+            oldEnd--;
+            newEnd--;
+        }
+
+        mTabTitles.clear();
+        mTabTitles.addAll(newTitles);
+        precomputeTitleWidths();
+
+        if (start == oldEnd && start == newEnd) {
+            // 没有变化
+            return;
+        }
+
+        mTabStrip.invalidateTextMetrics();
+        if (oldEnd != newEnd) {
+            shiftBadges(start, oldEnd, newEnd, newCount);
+        }
+        if (mTabStrip.isFlat()) {
+            mTabStrip.setFlatTabs(mTabTitles);
+        } else if (mTabVirtualized) {
+            mTabStrip.onVirtualTabsChanged(start, oldEnd, newEnd, newCount);
+        } else if (oldEnd - start == newEnd - start) {
+            // 数量没变，只是标题变了，重新绑定变化的tab
+            for (int i = start; i < newEnd; i++) {
+                bindTabView(mTabStrip.getChildAt(i), i);
+            }
+        } else {
+            mTabStrip.applyTabDiff(start, oldEnd, newEnd, oldTitles, newTitles);
+        }
+
+        final int currentItem = mViewPager.getCurrentItem();
+        if (!mTabVirtualized || mTabStrip.isFlat()) {
+            resetSelectedTab(currentItem);
+        }
+        mTabStrip.onViewPagerPageChanged(Math.max(0, Math.min(currentItem, newCount - 1)), 0f);
+    }
+
+    /**
+     * @return adapter的标题和当前tab上的标题是否不一样
+     */
+    private boolean titlesChanged(PagerAdapter adapter) {
+        final int count = adapter.getCount();
+        if (count != mTabTitles.size()) {
+            return true;
+        }
+        for (int i = 0; i < count; i++) {
+            if (!TextUtils.equals(mTabTitles.get(i), adapter.getPageTitle(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private class TabAdapterObserver extends DataSetObserver {
+        @Override
+        public void onChanged() {
+            onAdapterDataSetChanged();
+        }
+
+        @Override
+        public void onInvalidated() {
+            onAdapterDataSetChanged();
+        }
+    }
+
     /**
      * Create a default view to be used for tabs. This is called if a custom tab view is not set via
      * {@link #setCustomTabView(int, int)}.
@@ -284,30 +718,15 @@ public class SlidingTabLayout extends HorizontalScrollView {
         TextView textView = new TextView(context);
         textView.setGravity(Gravity.CENTER);
         textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, mTabTextSize);
-        Typeface typeface;
-        if (mTabTextTypeface == 1) {
-            typeface = Typeface.DEFAULT_BOLD;
-        } else if (mTabTextTypeface == 2) {
-            typeface = Typeface.SANS_SERIF;
-        } else if (mTabTextTypeface == 3) {
-            typeface = Typeface.SERIF;
-        } else if (mTabTextTypeface == 4) {
-            typeface = Typeface.MONOSPACE;
-        } else {
-            typeface = Typeface.DEFAULT;
-        }
-        textView.setTypeface(typeface);
+        textView.setTypeface(resolveTabTypeface());
         textView.setTextColor(mTabTextColor);
-        textView.setLayoutParams(new LinearLayout.LayoutParams(
-                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        // 平分和固定宽度由SlidingTabStrip计算，这里始终是wrap_content
+        textView.setLayoutParams(new LinearLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT));
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-            // If we're running on Honeycomb or newer, then we can use the Theme's
-            // selectableItemBackground to ensure that the View has a pressed state
-            TypedValue outValue = new TypedValue();
-            getContext().getTheme().resolveAttribute(android.R.attr.selectableItemBackground,
-                    outValue, true);
-            textView.setBackgroundResource(outValue.resourceId);
+        // selectableItemBackground在TabStyle里面已经解析好了
+        if (mTabStyle.tabBackgroundResId != 0) {
+            textView.setBackgroundResource(mTabStyle.tabBackgroundResId);
         }
 
         /*if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
@@ -321,92 +740,799 @@ public class SlidingTabLayout extends HorizontalScrollView {
         return textView;
     }
 
+    /**
+     * @return tab_text_type_face对应的Typeface
+     */
+    protected Typeface resolveTabTypeface() {
+        if (mTabStyle != null && mTabStyle.textTypeface == mTabTextTypeface) {
+            return mTabStyle.typeface;
+        }
+        return TabStyle.resolveTypeface(mTabTextTypeface);
+    }
+
     /**
      * populate tabs
      */
     protected void populateTabStrip() {
+        mPopulateStartNanos = mTabLayoutMetrics != null ? System.nanoTime() : 0;
+        beginTrace("SlidingTabLayout#populateTabStrip");
+        try {
+            populateTabViews();
+        } finally {
+            endTrace();
+        }
+    }
+
+    private void populateTabViews() {
         final PagerAdapter adapter = mViewPager.getAdapter();
-        final OnClickListener tabClickListener = new TabClickListener();
 
-        for (int i = 0; i < adapter.getCount(); i++) {
-            View tabView = null;
-            TextView tabTitleView = null;
+        // 之前还没有完成的异步inflate和延迟创建作废
+        mAsyncPopulateGeneration++;
+        mAsyncPopulating = false;
+        mLazyPopulating = false;
+        unscheduleLazyPopulate();
+        mSelectedTabPosition = -1;
+        mInitialStatePending = true;
 
-            if (mTabViewLayoutId != 0 && mTabViewTextViewId != 0) {
-                // If there is a custom tab view layout id set, try and inflate it
-                tabView = LayoutInflater.from(getContext()).inflate(mTabViewLayoutId,
-                        mTabStrip, false);
-                tabTitleView = (TextView) tabView.findViewById(mTabViewTextViewId);
-            }
+        mTabTitles.clear();
+        for (int i = 0; i < adapter.getCount(); i++) {
+            mTabTitles.add(adapter.getPageTitle(i));
+        }
+        precomputeTitleWidths();
+        setBadgeTabCount(mTabTitles.size());
 
-            if (tabView == null) {
-                tabView = createDefaultTabView(getContext());
-            }
+        final boolean flat = isTabFlat();
+        if (flat != mTabStrip.isFlat()) {
+            mTabStrip.setFlat(flat);
+        }
+        if (flat) {
+            // 只测量标题，不创建view
+            mTabStrip.setFlatTabs(mTabTitles);
+            dispatchTabsPopulated();
+            return;
+        }
 
-            if (tabTitleView == null && TextView.class.isInstance(tabView)) {
-                tabTitleView = (TextView) tabView;
-            }
+        if (mTabVirtualized) {
+            // 虚拟化的时候只记录数量，真正的view在滑动到可见区域的时候才创建
+            mTabStrip.setVirtualTabCount(adapter.getCount());
+            dispatchTabsPopulated();
+            return;
+        }
 
-            // tab没有占满全屏的时候如果为true会平分
-            if (mTabDistributeColEvenly) {
-                LinearLayout.LayoutParams lp = (LinearLayout.LayoutParams) tabView.getLayoutParams();
-                lp.width = 0;
-                lp.weight = 1;
-            }
+        if (mTabAsyncInflate && mTabViewLayoutId != 0 && mTabViewTextViewId != 0) {
+            populateTabStripAsync();
+            return;
+        }
 
-            if (tabTitleView != null) tabTitleView.setText(adapter.getPageTitle(i));
+        if (mTabLazyPopulate) {
+            populateTabStripLazy();
+            return;
+        }
 
-            tabView.setOnClickListener(tabClickListener);
+        final OnClickListener tabClickListener = new TabClickListener();
 
-            String desc = mContentDescriptions.get(i, null);
-            if (desc != null) {
-                tabView.setContentDescription(desc);
-            }
+        for (int i = 0; i < adapter.getCount(); i++) {
+            View tabView = createTabView(tabClickListener);
+            bindTabView(tabView, i);
 
             mTabStrip.addView(tabView);
+        }
+        dispatchTabsPopulated();
+    }
+
+    /**
+     * 先用占位的view把每个tab的宽度占住，然后在后台线程inflate自定义的tab，
+     * 每{@link #ASYNC_INFLATE_BATCH_SIZE}个回到主线程替换掉占位的view
+     */
+    protected void populateTabStripAsync() {
+        final int tabCount = mTabTitles.size();
+        for (int i = 0; i < tabCount; i++) {
+            mTabStrip.addView(createTabPlaceholder(i));
+        }
+        if (tabCount == 0) {
+            dispatchTabsPopulated();
+            return;
+        }
 
-            if (!SlidingViewPager.class.isInstance(mViewPager)) {
-                if (i == mViewPager.getCurrentItem()) {
-                    tabView.setSelected(true);
+        mAsyncPopulating = true;
+        final int generation = mAsyncPopulateGeneration;
+        // 每个任务一个自己的inflater，不和主线程共用
+        final LayoutInflater inflater = LayoutInflater.from(getContext()).cloneInContext(getContext());
+        final int layoutId = mTabViewLayoutId;
+        getTabBackgroundExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                // 不能用主线程上的tab strip当parent，这里只用来生成和tab strip一样的LayoutParams
+                final ViewGroup parent = new LinearLayout(inflater.getContext());
+                for (int start = 0; start < tabCount; start += ASYNC_INFLATE_BATCH_SIZE) {
+                    if (generation != mAsyncPopulateGeneration) {
+                        return;
+                    }
+                    final int batchStart = start;
+                    final View[] views = new View[Math.min(ASYNC_INFLATE_BATCH_SIZE, tabCount - start)];
+                    for (int j = 0; j < views.length; j++) {
+                        try {
+                            views[j] = inflater.inflate(layoutId, parent, false);
+                        } catch (RuntimeException e) {
+                            // 有的view只能在主线程创建(比如构造的时候创建Handler)，交给主线程重新inflate，
+                            // 布局本身有问题的话在主线程inflate的时候抛出来
+                            views[j] = null;
+                        }
+                    }
+                    sMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            attachAsyncTabViews(generation, batchStart, views);
+                        }
+                    });
                 }
             }
+        });
+    }
 
+    /**
+     * 在主线程上用inflate好的tab替换占位的view
+     */
+    private void attachAsyncTabViews(int generation, int start, View[] views) {
+        if (generation != mAsyncPopulateGeneration || mViewPager == null) {
+            return;
         }
-    }
+        final OnClickListener tabClickListener = mTabStrip.getTabClickListener();
+        final int currentItem = mViewPager.getCurrentItem();
+        for (int j = 0; j < views.length; j++) {
+            View tabView = views[j] != null
+                    ? setupTabView(views[j], tabClickListener)
+                    : createTabView(tabClickListener);
+            replaceTabPlaceholder(start + j, tabView, currentItem);
+        }
+        mTabStrip.requestLayout();
+        mTabStrip.invalidate();
 
-    @Override
-    protected void onAttachedToWindow() {
-        super.onAttachedToWindow();
-        if (!SlidingViewPager.class.isInstance(mViewPager)) {
-            if (mViewPager != null) {
-                scrollToTab(mViewPager.getCurrentItem(), 0);
-            }
+        if (start + views.length >= mTabTitles.size()) {
+            mAsyncPopulating = false;
+            dispatchTabsPopulated();
         }
     }
 
     /**
-     * 滑动到对应位置
-     *
-     * @param tabIndex       tabIndex
-     * @param positionOffset 应该偏移的距离
+     * 用真正的tab替换position上占位的view
      */
-    protected void scrollToTab(int tabIndex, int positionOffset) {
-        final int tabStripChildCount = mTabStrip.getChildCount();
-        if (tabStripChildCount == 0 || tabIndex < 0 || tabIndex >= tabStripChildCount) {
+    private void replaceTabPlaceholder(int position, View tabView, int currentItem) {
+        bindTabView(tabView, position);
+        tabView.setSelected(position == currentItem);
+        mTabStrip.replaceTabView(position, tabView);
+    }
+
+    /**
+     * 先用占位的view把每个tab的宽度占住，只创建当前页面在初始的滑动位置下可见的tab，
+     * 剩下的tab从当前页面往两边，在主线程空闲的时候每次创建{@link #LAZY_POPULATE_BATCH_SIZE}个
+     */
+    protected void populateTabStripLazy() {
+        final int tabCount = mTabTitles.size();
+        if (tabCount == 0) {
+            dispatchTabsPopulated();
             return;
         }
+        final int[] estimatedWidths = new int[tabCount];
+        for (int i = 0; i < tabCount; i++) {
+            mTabStrip.addView(createTabPlaceholder(i));
+            estimatedWidths[i] = estimateTabWidth(mTabTitles.get(i));
+        }
 
-        View selectedChild = mTabStrip.getChildAt(tabIndex);
-        if (selectedChild != null) {
-            int targetScrollX = selectedChild.getLeft() + positionOffset;
-
-            if (tabIndex > 0 || positionOffset > 0) {
-                // If we're not at the first child and are mid-scroll, make sure we obey the offset
-                targetScrollX -= mTabTitleOffset;
-            }
+        // 按估算的宽度找出滑动到当前页面的时候可见的tab
+        final int currentItem = Math.max(0, Math.min(mViewPager.getCurrentItem(), tabCount - 1));
+        final int viewportWidth = getWidth() > 0 ? getWidth() : getResources().getDisplayMetrics().widthPixels;
+        int currentLeft = 0;
+        for (int i = 0; i < currentItem; i++) {
+            currentLeft += estimatedWidths[i];
+        }
+        final int scrollX = Math.max(0, TabMath.scrollTarget(currentItem, currentLeft, 0, mTabTitleOffset));
+        int first = currentItem;
+        int left = currentLeft;
+        while (first > 0 && left > scrollX) {
+            first--;
+            left -= estimatedWidths[first];
+        }
+        int last = currentItem;
+        int right = currentLeft + estimatedWidths[currentItem];
+        while (last < tabCount - 1 && right < scrollX + viewportWidth) {
+            last++;
+            right += estimatedWidths[last];
+        }
 
-            scrollTo(targetScrollX, 0);
+        final OnClickListener tabClickListener = mTabStrip.getTabClickListener();
+        for (int i = first; i <= last; i++) {
+            replaceTabPlaceholder(i, createTabView(tabClickListener), currentItem);
         }
+        mLazyNextLeft = first - 1;
+        mLazyNextRight = last + 1;
+        if (mLazyNextLeft < 0 && mLazyNextRight >= tabCount) {
+            dispatchTabsPopulated();
+            return;
+        }
+
+        mAsyncPopulating = true;
+        mLazyPopulating = true;
+        scheduleLazyPopulate();
+    }
+
+    private void scheduleLazyPopulate() {
+        if (!mLazyPopulateScheduled) {
+            mLazyPopulateScheduled = true;
+            Looper.myQueue().addIdleHandler(mLazyPopulateHandler);
+        }
+    }
+
+    private void unscheduleLazyPopulate() {
+        if (mLazyPopulateScheduled) {
+            mLazyPopulateScheduled = false;
+            Looper.myQueue().removeIdleHandler(mLazyPopulateHandler);
+        }
+    }
+
+    /**
+     * 主线程空闲的时候创建一批tab，右边和左边交替，离当前页面近的先创建
+     *
+     * @return 是否还有没有创建的tab
+     */
+    private boolean populateLazyBatch() {
+        if (!mLazyPopulating || mViewPager == null) {
+            return false;
+        }
+        final int tabCount = mTabTitles.size();
+        final OnClickListener tabClickListener = mTabStrip.getTabClickListener();
+        final int currentItem = mViewPager.getCurrentItem();
+        for (int n = 0; n < LAZY_POPULATE_BATCH_SIZE && (mLazyNextLeft >= 0 || mLazyNextRight < tabCount); n++) {
+            final int position;
+            if (mLazyNextRight < tabCount && (mLazyNextLeft < 0 || (n & 1) == 0)) {
+                position = mLazyNextRight++;
+            } else {
+                position = mLazyNextLeft--;
+            }
+            replaceTabPlaceholder(position, createTabView(tabClickListener), currentItem);
+        }
+        mTabStrip.requestLayout();
+        mTabStrip.invalidate();
+
+        if (mLazyNextLeft < 0 && mLazyNextRight >= tabCount) {
+            mAsyncPopulating = false;
+            mLazyPopulating = false;
+            dispatchTabsPopulated();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 异步inflate或者延迟创建的时候占位的view，宽度按标题估算
+     */
+    protected View createTabPlaceholder(int position) {
+        View placeholder = new View(getContext());
+        placeholder.setLayoutParams(new LinearLayout.LayoutParams(
+                estimateTabWidth(mTabTitles.get(position)), ViewGroup.LayoutParams.WRAP_CONTENT));
+        placeholder.setMinimumHeight(mTabTextSize + mTabTextPaddingTop + mTabTextPaddingBottom);
+        return placeholder;
+    }
+
+    /**
+     * 不创建view，按照文字大小和padding估算tab的宽度
+     */
+    protected int estimateTabWidth(CharSequence title) {
+        return (int) Math.ceil(measureTabTitle(title)) + mTabTextPaddingLeft + mTabTextPaddingRight;
+    }
+
+    /**
+     * @return 用默认tab的字号、字体测量的标题宽度，后台线程已经测量过的直接使用
+     */
+    private float measureTabTitle(CharSequence title) {
+        final TextPaint paint = getTabTextPaint();
+        final float width = TitleWidthCache.get(title, paint.getTextSize(), paint.getTypeface());
+        if (width >= 0) {
+            return width;
+        }
+        return title != null ? paint.measureText(title, 0, title.length()) : 0;
+    }
+
+    /**
+     * @return 这次populate是否使用flat模式
+     */
+    protected boolean isTabFlat() {
+        return mTabFlat && mTabViewLayoutId == 0;
+    }
+
+    /**
+     * @return 和默认tab的TextView字号、字体一样的paint，用来估算和预先测量标题
+     */
+    private TextPaint getTabTextPaint() {
+        if (mTabEstimatePaint == null) {
+            mTabEstimatePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+            mTabEstimatePaint.setTextSize(mTabTextSize);
+            mTabEstimatePaint.setTypeface(resolveTabTypeface());
+        }
+        return mTabEstimatePaint;
+    }
+
+    /**
+     * 在后台线程测量还没有缓存的标题，估算tab宽度和画Text Indicator的时候使用
+     */
+    private void precomputeTitleWidths() {
+        if (!mTabTitles.isEmpty()) {
+            TitleWidthCache.precompute(getTabBackgroundExecutor(), mTabTitles, getTabTextPaint());
+        }
+    }
+
+    private void dispatchTabsPopulated() {
+        if (mTabLayoutMetrics != null && mPopulateStartNanos != 0) {
+            mTabLayoutMetrics.onTabStripPopulated(mTabTitles.size(), System.nanoTime() - mPopulateStartNanos);
+            mPopulateStartNanos = 0;
+        }
+        if (mOnTabsPopulatedListener != null) {
+            mOnTabsPopulatedListener.onTabsPopulated(mTabTitles.size());
+        }
+    }
+
+    private void beginTrace(String sectionName) {
+        if (mTabTraceEnabled && Build.VERSION.SDK_INT >= 18) {
+            Trace.beginSection(sectionName);
+        }
+    }
+
+    private void endTrace() {
+        if (mTabTraceEnabled && Build.VERSION.SDK_INT >= 18) {
+            Trace.endSection();
+        }
+    }
+
+    private static synchronized ExecutorService getTabBackgroundExecutor() {
+        if (sTabBackgroundExecutor == null) {
+            sTabBackgroundExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "SlidingTabLayout-background");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sTabBackgroundExecutor;
+    }
+
+    /**
+     * 创建一个tab view，这时候还没有绑定数据
+     *
+     * @param tabClickListener tab的点击事件
+     */
+    protected View createTabView(OnClickListener tabClickListener) {
+        View tabView = null;
+
+        if (mTabViewLayoutId != 0 && mTabViewTextViewId != 0) {
+            // If there is a custom tab view layout id set, try and inflate it
+            tabView = LayoutInflater.from(getContext()).inflate(mTabViewLayoutId,
+                    mTabStrip, false);
+        }
+
+        if (tabView == null) {
+            tabView = createDefaultTabView(getContext());
+        }
+        return setupTabView(tabView, tabClickListener);
+    }
+
+    /**
+     * 给新创建的tab view设置点击事件、LayoutParams等，异步inflate的tab也会走这里
+     */
+    private View setupTabView(View tabView, OnClickListener tabClickListener) {
+        TextView tabTitleView = null;
+        if (mTabViewTextViewId != 0) {
+            tabTitleView = (TextView) tabView.findViewById(mTabViewTextViewId);
+        }
+
+        if (tabTitleView == null && TextView.class.isInstance(tabView)) {
+            tabTitleView = (TextView) tabView;
+        }
+
+        tabView.setTag(R.id.sliding_tab_title, tabTitleView);
+        tabView.setOnClickListener(tabClickListener);
+        tabView.setOnTouchListener(mTabPressListener);
+        return tabView;
+    }
+
+    /**
+     * 把position对应的数据绑定到tab view上面，虚拟化的时候回收的view也会走这里
+     *
+     * @param tabView  {@link #createTabView(OnClickListener)}创建的view
+     * @param position tab位置
+     */
+    protected void bindTabView(View tabView, int position) {
+        TextView tabTitleView = (TextView) tabView.getTag(R.id.sliding_tab_title);
+        if (tabTitleView != null) tabTitleView.setText(mTabTitles.get(position));
+
+        String desc = mContentDescriptions.get(position, null);
+        tabView.setContentDescription(desc);
+
+        // 点击和切换选中状态的时候直接通过tag拿到位置
+        tabView.setTag(R.id.sliding_tab_position, position);
+        if (mTabVirtualized) {
+            tabView.setSelected(position == mViewPager.getCurrentItem());
+        }
+    }
+
+    /**
+     * 只取消之前选中的tab，选中position的tab
+     */
+    private void updateSelectedTab(int position) {
+        if (mTabStrip.isFlat()) {
+            // 没有tab view，只重画两个tab
+            if (mSelectedTabPosition != position) {
+                mTabStrip.invalidateFlatTab(mSelectedTabPosition);
+                mTabStrip.invalidateFlatTabAccessibility(mSelectedTabPosition);
+                mSelectedTabPosition = position;
+                mTabStrip.invalidateFlatTab(position);
+                mTabStrip.invalidateFlatTabAccessibility(position);
+            }
+            return;
+        }
+        if (mSelectedTabPosition != position && mSelectedTabPosition >= 0
+                && mSelectedTabPosition < mTabStrip.getTabCount()) {
+            View oldTabView = mTabStrip.getTabView(mSelectedTabPosition);
+            if (oldTabView != null) {
+                oldTabView.setSelected(false);
+            }
+        }
+        View tabView = position < mTabStrip.getTabCount() ? mTabStrip.getTabView(position) : null;
+        if (tabView != null) {
+            tabView.setSelected(true);
+        }
+        mSelectedTabPosition = position;
+    }
+
+    /**
+     * 重新设置所有tab的选中状态，只在tab变化或者重新同步的时候使用
+     */
+    private void resetSelectedTab(int position) {
+        for (int i = 0; i < mTabStrip.getChildCount(); i++) {
+            mTabStrip.getChildAt(i).setSelected(position == mTabStrip.getTabPosition(i));
+        }
+        if (mTabStrip.isFlat()) {
+            mTabStrip.invalidate();
+            mTabStrip.invalidateFlatTabAccessibility(mSelectedTabPosition);
+            mTabStrip.invalidateFlatTabAccessibility(position);
+        }
+        mSelectedTabPosition = position;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mViewPager != null && mPagerSyncHub == null) {
+            // detach之后重新attach，这段时间里面adapter和选中的页面可能都变了
+            bindViewPager();
+            onAdapterDataSetChanged();
+            // 等重新layout之后再同步
+            mInitialStatePending = true;
+            requestLayout();
+        }
+    }
+
+    /**
+     * 滑动到对应位置
+     *
+     * @param tabIndex       tabIndex
+     * @param positionOffset 应该偏移的距离
+     */
+    protected void scrollToTab(int tabIndex, int positionOffset) {
+        final int tabStripTabCount = mTabStrip.getTabCount();
+        if (tabStripTabCount == 0 || tabIndex < 0 || tabIndex >= tabStripTabCount) {
+            return;
+        }
+
+        // 虚拟化的时候tab view可能不存在，位置从tab strip里面取
+        int targetScrollX = TabMath.scrollTarget(tabIndex, mTabStrip.getTabLeft(tabIndex),
+                positionOffset, mTabTitleOffset);
+        // HorizontalScrollView会把超出范围的位置截断，不截断的话滑到最后几个tab时每一帧都会scrollTo到同一个位置
+        final int maxScrollX = Math.max(0, mTabStrip.getWidth() - (getWidth() - getPaddingLeft() - getPaddingRight()));
+        targetScrollX = Math.max(0, Math.min(targetScrollX, maxScrollX));
+
+        if (targetScrollX != getScrollX()) {
+            scrollTo(targetScrollX, 0);
+            if (mTabLayoutMetrics != null) {
+                mScrollSessionScrollToCount++;
+            }
+        }
+    }
+
+    /**
+     * ViewPager滑动的时候更新indicator和tab的滑动位置
+     */
+    protected void applyPageScrolled(int position, float positionOffset) {
+        int tabStripTabCount = mTabStrip.getTabCount();
+        if ((tabStripTabCount == 0) || (position < 0) || (position >= tabStripTabCount)) {
+            return;
+        }
+
+        mTabStrip.onViewPagerPageChanged(position, positionOffset);
+
+        int extraOffset = TabMath.scrollOffset(mTabStrip.getTabWidth(position), positionOffset);
+        scrollToTab(position, extraOffset);
+    }
+
+    /**
+     * 把选中的tab、indicator和滑动位置同步到ViewPager当前的状态
+     */
+    private void syncWithViewPager() {
+        mTabSyncStale = false;
+        if (mViewPager == null) {
+            return;
+        }
+        final int currentItem = mViewPager.getCurrentItem();
+        resetSelectedTab(currentItem);
+        if (mPagerSyncHub != null && mPagerSyncHub.getScrollState() != ViewPager.SCROLL_STATE_IDLE) {
+            applyPageScrolled(mPagerSyncHub.getPosition(), mPagerSyncHub.getPositionOffset());
+        } else {
+            applyPageScrolled(currentItem, 0f);
+        }
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateTabSyncVisible();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateTabSyncVisible();
+    }
+
+    private void updateTabSyncVisible() {
+        final boolean visible = getWindowVisibility() == VISIBLE && isShown();
+        if (visible == mTabSyncVisible) {
+            return;
+        }
+        mTabSyncVisible = visible;
+        if (visible && mTabSyncStale) {
+            syncWithViewPager();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mScrollFramePending) {
+            removeCallbacks(mScrollFrameRunnable);
+            mScrollFramePending = false;
+        }
+        removeCallbacks(mSnapRunnable);
+        if (mLazyPopulating) {
+            // 延迟创建暂停，重新attach的时候从停下来的地方继续
+            unscheduleLazyPopulate();
+        } else if (mAsyncPopulating) {
+            // 还没有完成的异步inflate作废，不再持有这个view，重新attach的时候重新创建
+            mAsyncPopulateGeneration++;
+        }
+        // 不在window上的时候不再接收ViewPager的回调，重新attach的时候再同步
+        unbindViewPager();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        // HorizontalScrollView先按UNSPECIFIED测量tab strip，不够宽的时候再按可见的宽度测量一次。
+        // 提前告诉tab strip可见的宽度，第一次就按最终的宽度测量
+        mTabStrip.mFillViewportWidth = isFillViewport()
+                && MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.UNSPECIFIED
+                ? MeasureSpec.getSize(widthMeasureSpec) - getPaddingLeft() - getPaddingRight() : 0;
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+        if (mTabVirtualized) {
+            mTabStrip.fillVirtualWindow(getScrollX(), getWidth());
+        }
+        if (mInitialStatePending && mViewPager != null) {
+            // tab的位置确定了，选中的tab、indicator和滑动位置只在这里设置一次
+            mInitialStatePending = false;
+            syncWithViewPager();
+        } else if (!mTabVirtualized && mAsyncPopulating && mViewPager != null
+                && mPageChangeListener.mScrollState == ViewPager.SCROLL_STATE_IDLE) {
+            // 占位的view被替换之后tab的位置变了，重新滑动到当前的tab
+            scrollToTab(mViewPager.getCurrentItem(), 0);
+        }
+    }
+
+    @Override
+    protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+        super.onScrollChanged(l, t, oldl, oldt);
+        if (mTabStrip.isFlat()) {
+            // flat模式只画可见区域内的标题，滑动之后需要重画
+            mTabStrip.invalidate();
+        } else if (mTabVirtualized) {
+            mTabStrip.fillVirtualWindow(l, getWidth());
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent ev) {
+        final boolean handled = super.onTouchEvent(ev);
+        if (mTabSnapToTab) {
+            final int action = ev.getAction() & MotionEvent.ACTION_MASK;
+            if (action == MotionEvent.ACTION_DOWN) {
+                removeCallbacks(mSnapRunnable);
+            } else if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+                // 手指离开之后可能还在fling，等滑动停下来再对齐
+                removeCallbacks(mSnapRunnable);
+                mSnapLastScrollX = getScrollX();
+                postDelayed(mSnapRunnable, SNAP_CHECK_INTERVAL_MS);
+            }
+        }
+        return handled;
+    }
+
+    /**
+     * 平滑的滑动到离当前位置最近的tab，tab的left对齐到title offset的位置
+     */
+    protected void snapToNearestTab() {
+        final int tabIndex = mTabStrip.getTabOffsetIndex().nearestIndex(getScrollX() + mTabTitleOffset);
+        if (tabIndex < 0 || tabIndex >= mTabStrip.getTabCount()) {
+            return;
+        }
+        int targetScrollX = TabMath.scrollTarget(tabIndex, mTabStrip.getTabLeft(tabIndex), 0, mTabTitleOffset);
+        if (targetScrollX != getScrollX()) {
+            smoothScrollTo(targetScrollX, 0);
+        }
+    }
+
+    /**
+     * x所在的tab，O(log n)
+     *
+     * @param x SlidingTabLayout内容上的坐标，比如{@link #getScrollX()}
+     * @return tab的位置，x不在任何一个tab上或者tab还没有layout的时候返回-1
+     */
+    public int findTabAt(int x) {
+        final TabOffsetIndex index = mTabStrip.getTabOffsetIndex();
+        final int count = Math.min(index.getCount(), mTabStrip.getTabCount());
+        if (count == 0 || x < index.offsetOf(0) || x >= index.offsetOf(count)) {
+            return -1;
+        }
+        return Math.min(index.indexAt(x), count - 1);
+    }
+
+    /**
+     * @return 当前可见的第一个tab，没有tab的时候返回-1
+     */
+    public int getFirstVisibleTab() {
+        return updateVisibleTabRange() ? mVisibleTabRange[0] : -1;
+    }
+
+    /**
+     * @return 当前可见的最后一个tab，没有tab的时候返回-1
+     */
+    public int getLastVisibleTab() {
+        return updateVisibleTabRange() ? mVisibleTabRange[1] : -1;
+    }
+
+    private boolean updateVisibleTabRange() {
+        final TabOffsetIndex index = mTabStrip.getTabOffsetIndex();
+        final int count = Math.min(index.getCount(), mTabStrip.getTabCount());
+        if (count == 0) {
+            return false;
+        }
+        index.visibleRange(getScrollX(), getWidth(), mVisibleTabRange);
+        mVisibleTabRange[0] = Math.min(mVisibleTabRange[0], count - 1);
+        mVisibleTabRange[1] = Math.min(mVisibleTabRange[1], count - 1);
+        return true;
+    }
+
+    /**
+     * 设置tab上的badge，可以在任何线程调用。
+     * 一帧之内多次调用只在下一帧画一次，只重画数字变化了的tab，不会requestLayout。
+     * tab增加或者删除之后badge跟着tab移动，被替换掉的tab的badge清除
+     *
+     * @param position tab位置，不在[0, tab数量)之内的时候忽略
+     * @param count    显示的数字，0不显示，{@link #BADGE_DOT}只显示一个点
+     */
+    public void setBadge(int position, int count) {
+        synchronized (mBadgeLock) {
+            if (position < 0 || position >= mBadgeTabCount) {
+                return;
+            }
+            if (position >= mPendingBadges.length) {
+                if (count == 0) {
+                    return;
+                }
+                mPendingBadges = Arrays.copyOf(mPendingBadges,
+                        Math.min(mBadgeTabCount, Math.max(position + 1, mPendingBadges.length * 2)));
+            }
+            mPendingBadges[position] = count;
+        }
+        scheduleBadgeFrame();
+    }
+
+    /**
+     * 安排下一帧把badge交给tab strip，已经安排过的时候不重复安排
+     */
+    private void scheduleBadgeFrame() {
+        synchronized (mBadgeLock) {
+            if (mBadgeFramePending) {
+                return;
+            }
+            mBadgeFramePending = true;
+        }
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            ViewCompat.postOnAnimation(this, mBadgeFrameRunnable);
+        } else {
+            sMainHandler.post(mBadgeScheduleRunnable);
+        }
+    }
+
+    /**
+     * @return 最近一次{@link #setBadge(int, int)}设置的数字，可能还没有画出来
+     */
+    public int getBadge(int position) {
+        synchronized (mBadgeLock) {
+            return position >= 0 && position < mPendingBadges.length ? mPendingBadges[position] : 0;
+        }
+    }
+
+    /**
+     * 清除所有tab的badge，可以在任何线程调用
+     */
+    public void clearBadges() {
+        synchronized (mBadgeLock) {
+            Arrays.fill(mPendingBadges, 0);
+        }
+        scheduleBadgeFrame();
+    }
+
+    /**
+     * 重新populate之后tab的数量，超出的badge清除
+     */
+    private void setBadgeTabCount(int count) {
+        synchronized (mBadgeLock) {
+            mBadgeTabCount = count;
+            if (mPendingBadges.length > count) {
+                mPendingBadges = Arrays.copyOf(mPendingBadges, count);
+            }
+        }
+        scheduleBadgeFrame();
+    }
+
+    /**
+     * tab[start, oldEnd)被替换成了[start, newEnd)，中间的badge清除，后面的badge跟着tab移动
+     */
+    private void shiftBadges(int start, int oldEnd, int newEnd, int newCount) {
+        synchronized (mBadgeLock) {
+            final int[] oldBadges = mPendingBadges;
+            final int[] badges = new int[newCount];
+            System.arraycopy(oldBadges, 0, badges, 0, Math.min(start, oldBadges.length));
+            for (int i = oldEnd; i < oldBadges.length; i++) {
+                final int position = i - oldEnd + newEnd;
+                if (position < newCount) {
+                    badges[position] = oldBadges[i];
+                }
+            }
+            mPendingBadges = badges;
+            mBadgeTabCount = newCount;
+        }
+        scheduleBadgeFrame();
+    }
+
+    /**
+     * 在主线程上把这一帧之前设置的badge交给tab strip
+     */
+    private void applyPendingBadges() {
+        final int length;
+        synchronized (mBadgeLock) {
+            mBadgeFramePending = false;
+            length = mPendingBadges.length;
+            if (mBadgeFrame.length < length) {
+                mBadgeFrame = new int[length];
+            }
+            System.arraycopy(mPendingBadges, 0, mBadgeFrame, 0, length);
+        }
+        mTabStrip.setBadges(mBadgeFrame, length);
     }
 
     public class InternalViewPagerListener implements ViewPager.OnPageChangeListener {
@@ -415,179 +1541,1592 @@ public class SlidingTabLayout extends HorizontalScrollView {
         @Override
         public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
 
-            int tabStripChildCount = mTabStrip.getChildCount();
-            if ((tabStripChildCount == 0) || (position < 0) || (position >= tabStripChildCount)) {
+            int tabStripTabCount = mTabStrip.getTabCount();
+            if ((tabStripTabCount == 0) || (position < 0) || (position >= tabStripTabCount)) {
                 return;
             }
 
-            mTabStrip.onViewPagerPageChanged(position, positionOffset);
+            if (mTabLayoutMetrics != null) {
+                mScrollSessionPageScrolledCount++;
+            }
+            beginTrace("SlidingTabLayout#onPageScrolled");
+            if (mInitialStatePending) {
+                // 第一次layout的时候从ViewPager同步
+            } else if (!mTabSyncVisible) {
+                // 不可见的时候不处理，可见的时候再同步
+                mTabSyncStale = true;
+            } else if (mTabFrameCoalescing) {
+                // 只记录最新的位置，下一帧统一处理
+                mPendingScrollPosition = position;
+                mPendingScrollOffset = positionOffset;
+                if (mScrollFramePending) {
+                    mCoalescedScrollUpdateCount++;
+                } else {
+                    mScrollFramePending = true;
+                    ViewCompat.postOnAnimation(SlidingTabLayout.this, mScrollFrameRunnable);
+                }
+            } else {
+                applyPageScrolled(position, positionOffset);
+            }
+            endTrace();
+
+            final ViewPager.OnPageChangeListener[] listeners = mPageChangeListenerSnapshot;
+            for (int i = 0; i < listeners.length; i++) {
+                listeners[i].onPageScrolled(position, positionOffset, positionOffsetPixels);
+            }
 
-            View selectedTitle = mTabStrip.getChildAt(position);
-            int extraOffset = (selectedTitle != null) ? (int) (positionOffset * selectedTitle.getWidth()) : 0;
-            scrollToTab(position, extraOffset);
+        }
 
-            for (int i = 0, z = mViewPagerPageChangeListeners.size(); i < z; i++) {
-                ViewPager.OnPageChangeListener listener = mViewPagerPageChangeListeners.get(i);
-                if (listener != null) {
-                    listener.onPageScrolled(position, positionOffset, positionOffsetPixels);
+        @Override
+        public void onPageScrollStateChanged(int state) {
+            if (mTabLayoutMetrics != null) {
+                if (mScrollState == ViewPager.SCROLL_STATE_IDLE && state != ViewPager.SCROLL_STATE_IDLE) {
+                    mScrollSessionStartNanos = System.nanoTime();
+                    mScrollSessionPageScrolledCount = 0;
+                    mScrollSessionScrollToCount = 0;
+                } else if (state == ViewPager.SCROLL_STATE_IDLE && mScrollSessionStartNanos != 0) {
+                    mTabLayoutMetrics.onScrollSession(mScrollSessionPageScrolledCount, mScrollSessionScrollToCount,
+                            System.nanoTime() - mScrollSessionStartNanos);
+                    mScrollSessionStartNanos = 0;
                 }
             }
+            mScrollState = state;
+
+            final ViewPager.OnPageChangeListener[] listeners = mPageChangeListenerSnapshot;
+            for (int i = 0; i < listeners.length; i++) {
+                listeners[i].onPageScrollStateChanged(state);
+            }
+        }
 
+        @Override
+        public void onPageSelected(int position) {
+
+            if (mInitialStatePending || position == mSelectedTabPosition
+                    && mScrollState == ViewPager.SCROLL_STATE_IDLE) {
+                // 还没有layout，或者已经是选中的状态(比如SlidingViewPager第一次layout补发的回调)，不需要更新tab
+            } else if (!mTabSyncVisible) {
+                mTabSyncStale = true;
+            } else {
+                if (mScrollState == ViewPager.SCROLL_STATE_IDLE) {
+                    mTabStrip.onViewPagerPageChanged(position, 0f);
+                    scrollToTab(position, 0);
+                }
+
+                updateSelectedTab(position);
+            }
+
+            final ViewPager.OnPageChangeListener[] listeners = mPageChangeListenerSnapshot;
+            for (int i = 0; i < listeners.length; i++) {
+                listeners[i].onPageSelected(position);
+            }
+        }
+
+    }
+
+    /**
+     * Tab的点击切换
+     */
+    protected class TabClickListener implements OnClickListener {
+        @Override
+        public void onClick(View v) {
+            Object position = v.getTag(R.id.sliding_tab_position);
+            if (position instanceof Integer) {
+                mViewPager.setCurrentItem((Integer) position, mTabViewPagerSmoothScroll);
+            }
+        }
+    }
+
+    /**
+     * 按下tab的时候提示ViewPager提前准备对应的页面，不消费事件
+     */
+    private class TabPressListener implements OnTouchListener {
+        @Override
+        public boolean onTouch(View v, MotionEvent event) {
+            if (event.getAction() == MotionEvent.ACTION_DOWN) {
+                Object position = v.getTag(R.id.sliding_tab_position);
+                if (position instanceof Integer) {
+                    hintPageSelection((Integer) position);
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 按下tab到松开之间有几十毫秒，SlidingViewPager可以在这段时间里提前准备要切换到的页面
+     */
+    private void hintPageSelection(int position) {
+        if (mViewPager instanceof SlidingViewPager && position != mViewPager.getCurrentItem()) {
+            ((SlidingViewPager) mViewPager).prefetchPage(position);
+        }
+    }
+
+    /**
+     * 平分和固定宽度的时候tab按内容测量出来的宽度，以及是在第几次layout之前测量的。
+     * pendingMeasure是宽度直接从标题宽度缓存得到、还没有按最终的宽度测量过
+     */
+    private static final class TabMeasureState {
+        int naturalWidth = -1;
+        int layoutPass = -1;
+        boolean pendingMeasure;
+    }
+
+    /**
+     * 所有的tab都创建完成的回调
+     */
+    public interface OnTabsPopulatedListener {
+
+        /**
+         * @param tabCount tab的数量
+         */
+        void onTabsPopulated(int tabCount);
+
+    }
+
+    /**
+     * Allows complete control over the colors drawn in the tab layout. Set with
+     * {@link #setCustomTabColorizer(TabColorizer)}.
+     */
+    public interface TabColorizer {
+
+        /**
+         * @return return the color of the indicator used when {@code position} is selected.
+         */
+        int getIndicatorColor(int position);
+
+    }
+
+    public class SlidingTabStrip extends LinearLayout {
+
+        private final Paint mRectPaint;
+        private final Paint mLinePaint;
+
+        private int mSelectedPosition;
+
+        private float mSelectionOffset;
+
+        private SlidingTabLayout.TabColorizer mCustomTabColorizer;
+
+        private final SimpleTabColorizer mDefaultTabColorizer;
+
+        /**
+         * tab宽度的前缀和，tab的left以及x坐标所在的tab都从这里查。
+         * 不虚拟化的时候每次layout之后记录，每个tab的宽度包括到下一个tab的间隔，
+         * 虚拟化的时候没有测量过的tab使用估算的宽度
+         */
+        private final TabOffsetIndex mTabOffsetIndex = new TabOffsetIndex();
+
+        /**
+         * 每次layout之后记录下来的tab的右边界，
+         * onDraw、scrollToTab、onPageScrolled直接读数组，不再去遍历child
+         */
+        private int[] mTabRights = new int[0];
+        private int[] mTabSlotWidths = new int[0];
+        private int mTabGeometryCount;
+
+        /**
+         * 虚拟化的时候tab的总数，每个tab的宽度(0表示还没有测量过)，
+         * 已经测量过的tab的数量和宽度之和
+         */
+        private int mVirtualTabCount;
+        private int[] mVirtualTabWidths = new int[0];
+        private int mVirtualMeasuredCount;
+        private int mVirtualMeasuredTotal;
+        private int mVirtualEstimatedTabWidth;
+        private int mVirtualHeightMeasureSpec = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+
+        /**
+         * 虚拟化的时候当前已经创建的tab view以及可以复用的tab view
+         */
+        private final SparseArray<View> mVirtualActiveViews = new SparseArray<>();
+        private final List<View> mVirtualRecycledViews = new ArrayList<>();
+        private int mVirtualFirstPosition;
+        private int mVirtualLastPosition = -1;
+        private OnClickListener mTabClickListener;
+
+        /**
+         * 每个tab文字的宽高缓存，用于画Text Indicator。
+         * 文字、字体、字号没有变化的时候直接使用缓存，onDraw里面不再测量文字
+         */
+        private float[] mTextWidths = new float[0];
+        private float[] mTextHeights = new float[0];
+        private CharSequence[] mTextKeys = new CharSequence[0];
+        private float[] mTextSizes = new float[0];
+        private Typeface[] mTextTypefaces = new Typeface[0];
+        private final Paint.FontMetrics mFontMetrics = new Paint.FontMetrics();
+
+        /**
+         * indicator的位置，以及上一次画的区域、这一次要画的区域，用来局部刷新
+         */
+        private int mIndicatorLeft;
+        private int mIndicatorRight;
+        private int mIndicatorHalfTextWidth;
+        private int mIndicatorHalfTextHeight;
+        private boolean mIndicatorHasText;
+        private final Rect mDrawnIndicatorBounds = new Rect();
+        private final Rect mIndicatorBounds = new Rect();
+        private final Rect mIndicatorDirtyRect = new Rect();
+
+        /**
+         * indicator渐变表，key是两个颜色，value是从前一个颜色到后一个颜色的GRADIENT_STEPS个ARGB颜色。
+         * 最近使用的一张表单独记录下来，滑动的时候不用每帧都去查HashMap
+         */
+        private static final int GRADIENT_STEPS = 256;
+        private static final int MAX_GRADIENT_TABLES = 32;
+        private final Map<Long, int[]> mGradientTables = new HashMap<>();
+        private int mGradientFromColor;
+        private int mGradientToColor;
+        private int[] mGradientTable;
+
+        /**
+         * border和分割线的缓存，大小、tab的位置、样式变了之后重新录制
+         */
+        private Picture mStaticLayer;
+        private boolean mStaticLayerValid;
+
+        /**
+         * flat模式：没有child，标题直接画在tab strip上。
+         * 每个tab文字的宽度、tab本身的宽度，以及文字在普通、选中、按下、选中并按下时的颜色
+         */
+        private boolean mFlat;
+        private int mFlatTabCount;
+        private float[] mFlatTextWidths = new float[0];
+        private int[] mFlatTabWidths = new int[0];
+        private int[] mFlatLayoutWidths = new int[0];
+        private TextPaint mFlatTextPaint;
+        private final Paint.FontMetricsInt mFlatFontMetrics = new Paint.FontMetricsInt();
+        private final int[] mFlatTextColors = new int[4];
+        private int mFlatPressedPosition = -1;
+        private final Rect mFlatClipBounds = new Rect();
+        /**
+         * flat模式下没有tab view，每个tab作为一个虚拟的节点提供给TalkBack等无障碍服务
+         */
+        private FlatAccessibilityHelper mFlatAccessibilityHelper;
+
+        /**
+         * 每个tab的badge数字，以及按数字缓存的文字和文字宽度，画的时候不分配内存
+         */
+        private int[] mBadgeCounts = new int[0];
+        private int mBadgeCount;
+        private String[] mBadgeTexts;
+        private float[] mBadgeTextWidths;
+        private final TextPaint mBadgePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        private final Paint.FontMetricsInt mBadgeFontMetrics = new Paint.FontMetricsInt();
+        private final RectF mBadgeBounds = new RectF();
+        private final Rect mBadgeClipBounds = new Rect();
+
+        /**
+         * 平分和固定宽度的时候自己测量：上一次child的高度MeasureSpec，
+         * layout的次数(判断这次layout之前是否已经测量过)
+         */
+        private int mEqualWidthHeightSpec = -1;
+        private int mLayoutPass;
+        /**
+         * SlidingTabLayout可见的宽度，平分和固定宽度的时候内容不够宽就直接按这个宽度测量
+         */
+        private int mFillViewportWidth;
+
+        SlidingTabStrip(Context context) {
+            this(context, null);
+        }
+
+        SlidingTabStrip(Context context, AttributeSet attrs) {
+            super(context, attrs);
+            setWillNotDraw(false);
+
+            mRectPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            mLinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+            mDefaultTabColorizer = new SimpleTabColorizer();
+            mDefaultTabColorizer.setIndicatorColors(mTabBottomIndicatorColor);
+
+        }
+
+        void setCustomTabColorizer(SlidingTabLayout.TabColorizer customTabColorizer) {
+            mCustomTabColorizer = customTabColorizer;
+            clearGradientTables();
+            invalidate();
+        }
+
+        void setSelectedIndicatorColors(int... colors) {
+            // Make sure that the custom colorizer is removed
+            mCustomTabColorizer = null;
+            mDefaultTabColorizer.setIndicatorColors(colors);
+            clearGradientTables();
+            invalidate();
+        }
+
+        private void clearGradientTables() {
+            mGradientTables.clear();
+            mGradientTable = null;
+        }
+
+        /**
+         * indicator从fromColor渐变到toColor，渐变表按两个颜色查找，Colorizer每次返回的颜色不一样也没有关系
+         */
+        private int gradientColor(int fromColor, int toColor, float ratio) {
+            if (!mTabIndicatorGradientTable) {
+                return TabMath.blendArgb(toColor, fromColor, ratio);
+            }
+            int[] table = mGradientTable;
+            if (table == null || fromColor != mGradientFromColor || toColor != mGradientToColor) {
+                final Long key = ((long) fromColor << 32) | (toColor & 0xFFFFFFFFL);
+                table = mGradientTables.get(key);
+                if (table == null) {
+                    if (mGradientTables.size() >= MAX_GRADIENT_TABLES) {
+                        mGradientTables.clear();
+                    }
+                    table = TabMath.gradientTable(fromColor, toColor, GRADIENT_STEPS);
+                    mGradientTables.put(key, table);
+                }
+                mGradientTable = table;
+                mGradientFromColor = fromColor;
+                mGradientToColor = toColor;
+            }
+            return table[TabMath.gradientIndex(ratio, GRADIENT_STEPS)];
+        }
+
+        /**
+         * @return tab的总数，虚拟化的时候大于等于child的数量
+         */
+        int getTabCount() {
+            if (mFlat) {
+                return mFlatTabCount;
+            }
+            return mTabVirtualized ? mVirtualTabCount : getChildCount();
+        }
+
+        /**
+         * @return 第childIndex个child对应的tab位置
+         */
+        int getTabPosition(int childIndex) {
+            if (mTabVirtualized) {
+                return (Integer) getChildAt(childIndex).getTag(R.id.sliding_tab_position);
+            }
+            return childIndex;
+        }
+
+        /**
+         * @return position对应的tab view，虚拟化的时候不在可见区域内的返回null，flat模式始终返回null
+         */
+        View getTabView(int position) {
+            if (mFlat) {
+                return null;
+            }
+            return mTabVirtualized ? mVirtualActiveViews.get(position) : getChildAt(position);
+        }
+
+        int getTabLeft(int position) {
+            if (mFlat || mTabVirtualized || position < mTabGeometryCount) {
+                return mTabOffsetIndex.offsetOf(position);
+            }
+            return getChildAt(position).getLeft();
+        }
+
+        int getTabRight(int position) {
+            if (mFlat || mTabVirtualized) {
+                return mTabOffsetIndex.offsetOf(position + 1);
+            }
+            if (position < mTabGeometryCount) {
+                return mTabRights[position];
+            }
+            return getChildAt(position).getRight();
+        }
+
+        int getTabWidth(int position) {
+            if (mFlat || mTabVirtualized) {
+                return mTabOffsetIndex.getWidth(position);
+            }
+            if (position < mTabGeometryCount) {
+                return mTabRights[position] - mTabOffsetIndex.offsetOf(position);
+            }
+            return getChildAt(position).getWidth();
+        }
+
+        /**
+         * @return tab宽度的前缀和，不虚拟化的时候layout之后才有数据
+         */
+        TabOffsetIndex getTabOffsetIndex() {
+            return mTabOffsetIndex;
+        }
+
+        /**
+         * layout之后把所有tab的位置记录到数组里面，数组只有在tab变多的时候才重新分配
+         */
+        private void captureTabGeometry() {
+            final int childCount = getChildCount();
+            if (mTabRights.length < childCount) {
+                mTabRights = new int[childCount];
+                mTabSlotWidths = new int[childCount];
+            }
+            for (int i = 0; i < childCount; i++) {
+                mTabRights[i] = getChildAt(i).getRight();
+            }
+            // 每个tab占的宽度到下一个tab的left为止，这样前缀和就是每个tab的left
+            for (int i = 0; i < childCount; i++) {
+                mTabSlotWidths[i] = (i + 1 < childCount ? getChildAt(i + 1).getLeft() : mTabRights[i])
+                        - getChildAt(i).getLeft();
+            }
+            mTabOffsetIndex.setOrigin(childCount > 0 ? getChildAt(0).getLeft() : getPaddingLeft());
+            mTabOffsetIndex.setWidths(mTabSlotWidths, childCount, 0);
+            mTabGeometryCount = childCount;
+            invalidateStaticLayer();
+        }
+
+        /**
+         * tab的位置或者大小变了，缓存需要重新录制。
+         * 没有开启缓存的时候只清掉标记，layout本身会刷新需要重画的区域
+         */
+        void invalidateStaticLayer() {
+            mStaticLayerValid = false;
+            if (mTabStaticLayerCache) {
+                invalidate();
+            }
+        }
+
+        /**
+         * border、分割线的样式或者是否缓存变了，不管有没有开启缓存都要重画
+         */
+        void redrawStaticLayer() {
+            mStaticLayerValid = false;
+            invalidate();
+        }
+
+        @Override
+        protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+            super.onSizeChanged(w, h, oldw, oldh);
+            invalidateStaticLayer();
+        }
+
+        /**
+         * 用tabView替换index上的view(异步inflate的时候替换占位的view)，不会触发requestLayout
+         */
+        void replaceTabView(int index, View tabView) {
+            removeViewInLayout(getChildAt(index));
+            addViewInLayout(tabView, index, tabView.getLayoutParams(), true);
+        }
+
+        @Override
+        public void removeAllViews() {
+            super.removeAllViews();
+            mTabGeometryCount = 0;
+            mFlatTabCount = 0;
+            mFlatPressedPosition = -1;
+            mTabOffsetIndex.setWidths(mTabSlotWidths, 0, 0);
+            invalidateStaticLayer();
+        }
+
+        /**
+         * 切换flat模式，切换之前的tab需要先移除
+         */
+        void setFlat(boolean flat) {
+            mFlat = flat;
+            mFlatTabCount = 0;
+            mFlatPressedPosition = -1;
+            mVirtualTabCount = 0;
+            mVirtualActiveViews.clear();
+            if (flat && mFlatAccessibilityHelper == null) {
+                mFlatAccessibilityHelper = new FlatAccessibilityHelper(this);
+            }
+            ViewCompat.setAccessibilityDelegate(this, flat ? mFlatAccessibilityHelper : null);
+        }
+
+        boolean isFlat() {
+            return mFlat;
+        }
+
+        /**
+         * 更新badge，只刷新数字变化了的tab的区域，不影响tab的测量
+         *
+         * @param counts 每个tab的数字，只使用前length个
+         */
+        void setBadges(int[] counts, int length) {
+            if (mBadgeCounts.length < length) {
+                mBadgeCounts = Arrays.copyOf(mBadgeCounts, length);
+            }
+            final int end = Math.max(length, mBadgeCount);
+            for (int i = 0; i < end; i++) {
+                final int count = i < length ? counts[i] : 0;
+                if (mBadgeCounts[i] != count) {
+                    mBadgeCounts[i] = count;
+                    invalidateBadge(i);
+                }
+            }
+            mBadgeCount = length;
+        }
+
+        private void invalidateBadge(int position) {
+            if (position < getTabCount() && position < mTabOffsetIndex.getCount()) {
+                invalidate(getTabLeft(position), 0, getTabRight(position), getHeight());
+            }
+        }
+
+        /**
+         * 清除缓存的badge文字，最多显示的数字变化了的时候使用
+         */
+        void invalidateBadgeTexts() {
+            mBadgeTexts = null;
+            mBadgeTextWidths = null;
+            invalidate();
+        }
+
+        /**
+         * @return count对应的文字在缓存里面的位置，超过最大值的都是最后一个
+         */
+        private int badgeTextSlot(int count) {
+            final int maxCount = Math.max(mTabBadgeMaxCount, 1);
+            if (mBadgeTexts == null) {
+                mBadgeTexts = new String[maxCount + 2];
+                mBadgeTextWidths = new float[maxCount + 2];
+            }
+            final int slot = Math.min(count, maxCount + 1);
+            if (mBadgeTexts[slot] == null) {
+                mBadgeTexts[slot] = count > maxCount ? maxCount + "+" : String.valueOf(count);
+                mBadgeTextWidths[slot] = mBadgePaint.measureText(mBadgeTexts[slot]);
+            }
+            return slot;
+        }
+
+        @Override
+        protected void dispatchDraw(Canvas canvas) {
+            super.dispatchDraw(canvas);
+            // badge画在tab的上面
+            drawBadges(canvas);
+        }
+
+        /**
+         * 在tab的右上角画badge，只画可见区域和这次需要重画的区域内的tab
+         */
+        private void drawBadges(Canvas canvas) {
+            final int count = Math.min(Math.min(mBadgeCount, getTabCount()), mTabOffsetIndex.getCount());
+            if (count == 0) {
+                return;
+            }
+            int visibleLeft = SlidingTabLayout.this.getScrollX();
+            int visibleRight = visibleLeft + SlidingTabLayout.this.getWidth();
+            if (canvas.getClipBounds(mBadgeClipBounds)) {
+                visibleLeft = Math.max(visibleLeft, mBadgeClipBounds.left);
+                visibleRight = Math.min(visibleRight, mBadgeClipBounds.right);
+            }
+            if (visibleRight <= visibleLeft) {
+                return;
+            }
+            final int first = mTabOffsetIndex.indexAt(visibleLeft);
+            final int last = Math.min(mTabOffsetIndex.indexAt(visibleRight - 1), count - 1);
+
+            final TextPaint paint = mBadgePaint;
+            if (paint.getTextSize() != mTabBadgeTextSize) {
+                paint.setTextSize(mTabBadgeTextSize);
+                mBadgeTexts = null;
+                mBadgeTextWidths = null;
+            }
+            paint.getFontMetricsInt(mBadgeFontMetrics);
+            final int badgeHeight = mBadgeFontMetrics.descent - mBadgeFontMetrics.ascent;
+            final float radius = badgeHeight / 2f;
+            final int top = getPaddingTop() + mTabTextPaddingTop / 2;
+            for (int i = first; i <= last; i++) {
+                final int badge = mBadgeCounts[i];
+                if (badge == 0) {
+                    continue;
+                }
+                final int right = getTabRight(i) - mTabTextPaddingRight / 2;
+                paint.setColor(mTabBadgeColor);
+                if (badge < 0) {
+                    // 只画一个点
+                    canvas.drawCircle(right - radius / 2f, top + radius / 2f, radius / 2f, paint);
+                    continue;
+                }
+                final int slot = badgeTextSlot(badge);
+                final float textWidth = mBadgeTextWidths[slot];
+                final float width = Math.max(badgeHeight, textWidth + radius);
+                mBadgeBounds.set(right - width, top, right, top + badgeHeight);
+                canvas.drawRoundRect(mBadgeBounds, radius, radius, paint);
+                paint.setColor(mTabBadgeTextColor);
+                canvas.drawText(mBadgeTexts[slot], mBadgeBounds.centerX() - textWidth / 2f,
+                        top - mBadgeFontMetrics.ascent, paint);
+            }
+        }
+
+        /**
+         * flat模式下按照当前的标题重新测量所有的tab，不创建任何view
+         */
+        void setFlatTabs(List<CharSequence> titles) {
+            final int count = titles.size();
+            if (mFlatTabWidths.length < count) {
+                int capacity = Math.max(count, mFlatTabWidths.length * 2);
+                mFlatTextWidths = new float[capacity];
+                mFlatTabWidths = new int[capacity];
+                mFlatLayoutWidths = new int[capacity];
+            }
+            mFlatTextPaint = new TextPaint(getTabTextPaint());
+            mFlatTextPaint.getFontMetricsInt(mFlatFontMetrics);
+            resolveFlatTextColors();
+            for (int i = 0; i < count; i++) {
+                final float textWidth = measureTabTitle(titles.get(i));
+                mFlatTextWidths[i] = textWidth;
+                mFlatTabWidths[i] = (int) Math.ceil(textWidth) + mTabTextPaddingLeft + mTabTextPaddingRight;
+            }
+            mFlatTabCount = count;
+            mFlatPressedPosition = -1;
+            mTabOffsetIndex.setOrigin(getPaddingLeft());
+            mTabOffsetIndex.setWidths(mFlatTabWidths, count, 0);
+            requestLayout();
+            invalidate();
+            if (mFlatAccessibilityHelper != null) {
+                mFlatAccessibilityHelper.invalidateRoot();
+            }
+        }
+
+        /**
+         * 文字颜色在几种状态下的值只从ColorStateList里面取一次，画的时候直接用
+         */
+        private void resolveFlatTextColors() {
+            final int defaultColor = mTabTextColor.getDefaultColor();
+            mFlatTextColors[0] = mTabTextColor.getColorForState(FLAT_STATE_NORMAL, defaultColor);
+            mFlatTextColors[1] = mTabTextColor.getColorForState(FLAT_STATE_SELECTED, defaultColor);
+            mFlatTextColors[2] = mTabTextColor.getColorForState(FLAT_STATE_PRESSED, defaultColor);
+            mFlatTextColors[3] = mTabTextColor.getColorForState(FLAT_STATE_SELECTED_PRESSED, defaultColor);
+        }
+
+        /**
+         * flat模式下刷新position这个tab占的区域，选中和按下的状态变化的时候使用
+         */
+        void invalidateFlatTab(int position) {
+            if (mFlat && position >= 0 && position < mFlatTabCount) {
+                invalidate(getTabLeft(position), 0, getTabRight(position), getHeight());
+            }
+        }
+
+        /**
+         * flat模式下position这个tab的选中状态变了，通知无障碍服务
+         */
+        void invalidateFlatTabAccessibility(int position) {
+            if (mFlat && mFlatAccessibilityHelper != null && position >= 0 && position < mFlatTabCount) {
+                mFlatAccessibilityHelper.invalidateVirtualView(position);
+            }
+        }
+
+        @Override
+        protected boolean dispatchHoverEvent(MotionEvent event) {
+            if (mFlat && mFlatAccessibilityHelper != null && mFlatAccessibilityHelper.dispatchHoverEvent(event)) {
+                return true;
+            }
+            return super.dispatchHoverEvent(event);
+        }
+
+        /**
+         * @return x所在的tab，flat模式下点击的时候使用，不在任何tab上返回-1
+         */
+        private int findFlatTabAt(float x) {
+            if (mFlatTabCount == 0 || x < getTabLeft(0) || x >= getTabRight(mFlatTabCount - 1)) {
+                return -1;
+            }
+            return mTabOffsetIndex.indexAt((int) x);
+        }
+
+        private void setFlatPressedPosition(int position) {
+            if (mFlatPressedPosition != position) {
+                invalidateFlatTab(mFlatPressedPosition);
+                mFlatPressedPosition = position;
+                invalidateFlatTab(position);
+            }
+        }
+
+        @Override
+        public boolean onTouchEvent(MotionEvent event) {
+            if (!mFlat) {
+                return super.onTouchEvent(event);
+            }
+            switch (event.getAction() & MotionEvent.ACTION_MASK) {
+                case MotionEvent.ACTION_DOWN:
+                    setFlatPressedPosition(findFlatTabAt(event.getX()));
+                    if (mFlatPressedPosition >= 0) {
+                        hintPageSelection(mFlatPressedPosition);
+                    }
+                    return mFlatPressedPosition >= 0;
+                case MotionEvent.ACTION_MOVE:
+                    if (mFlatPressedPosition >= 0 && findFlatTabAt(event.getX()) != mFlatPressedPosition) {
+                        // 移出了按下的tab
+                        setFlatPressedPosition(-1);
+                    }
+                    return true;
+                case MotionEvent.ACTION_UP:
+                    final int position = mFlatPressedPosition;
+                    setFlatPressedPosition(-1);
+                    if (position >= 0 && mViewPager != null) {
+                        playSoundEffect(SoundEffectConstants.CLICK);
+                        mViewPager.setCurrentItem(position, mTabViewPagerSmoothScroll);
+                    }
+                    return true;
+                case MotionEvent.ACTION_CANCEL:
+                    // 开始拖动tab了，HorizontalScrollView会拦截
+                    setFlatPressedPosition(-1);
+                    return true;
+                default:
+                    return true;
+            }
+        }
+
+        /**
+         * flat模式下把画出来的每个tab当成一个虚拟的view，virtual view id就是tab的位置
+         */
+        private class FlatAccessibilityHelper extends ExploreByTouchHelper {
+
+            private final Rect mTabBounds = new Rect();
+
+            FlatAccessibilityHelper(View host) {
+                super(host);
+            }
+
+            @Override
+            protected int getVirtualViewAt(float x, float y) {
+                final int position = findFlatTabAt(x);
+                return position >= 0 ? position : INVALID_ID;
+            }
+
+            @Override
+            protected void getVisibleVirtualViews(List<Integer> virtualViewIds) {
+                for (int i = 0; i < mFlatTabCount; i++) {
+                    virtualViewIds.add(i);
+                }
+            }
+
+            @Override
+            protected void onPopulateEventForVirtualView(int virtualViewId, AccessibilityEvent event) {
+                event.setClassName(TextView.class.getName());
+                event.getText().add(getFlatTitle(virtualViewId));
+            }
+
+            @Override
+            protected void onPopulateNodeForVirtualView(int virtualViewId, AccessibilityNodeInfoCompat node) {
+                node.setClassName(TextView.class.getName());
+                node.setText(getFlatTitle(virtualViewId));
+                if (virtualViewId < mFlatTabCount) {
+                    mTabBounds.set(getTabLeft(virtualViewId), 0, getTabRight(virtualViewId), getHeight());
+                } else {
+                    // tab已经被移除了，ExploreByTouchHelper要求bounds不能是空的
+                    mTabBounds.set(0, 0, 1, 1);
+                }
+                node.setBoundsInParent(mTabBounds);
+                node.setClickable(true);
+                node.setSelected(virtualViewId == mSelectedTabPosition);
+                node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+            }
+
+            @Override
+            protected boolean onPerformActionForVirtualView(int virtualViewId, int action, Bundle arguments) {
+                if (action != AccessibilityNodeInfoCompat.ACTION_CLICK || virtualViewId >= mFlatTabCount
+                        || mViewPager == null) {
+                    return false;
+                }
+                mViewPager.setCurrentItem(virtualViewId, mTabViewPagerSmoothScroll);
+                sendEventForVirtualView(virtualViewId, AccessibilityEvent.TYPE_VIEW_CLICKED);
+                return true;
+            }
+
+            private CharSequence getFlatTitle(int position) {
+                final CharSequence title = position < mTabTitles.size() ? mTabTitles.get(position) : null;
+                return title != null ? title : "";
+            }
+
+        }
+
+        /**
+         * flat模式的测量，tab没有占满的时候按需要平分
+         */
+        private void measureFlat(int widthMeasureSpec, int heightMeasureSpec) {
+            final int paddingWidth = getPaddingLeft() + getPaddingRight();
+            int contentWidth = 0;
+            if (mTabFixedWidth > 0) {
+                contentWidth = mTabFixedWidth * mFlatTabCount;
+            } else {
+                for (int i = 0; i < mFlatTabCount; i++) {
+                    contentWidth += mFlatTabWidths[i];
+                }
+            }
+            final int textHeight = mFlatFontMetrics.bottom - mFlatFontMetrics.top;
+            final int height = Math.max(textHeight + mTabTextPaddingTop + mTabTextPaddingBottom
+                    + getPaddingTop() + getPaddingBottom(), getSuggestedMinimumHeight());
+            final int width = resolveSize(Math.max(contentWidth + paddingWidth, getSuggestedMinimumWidth()),
+                    widthMeasureSpec);
+
+            final int availableWidth = width - paddingWidth;
+            if (mTabFixedWidth > 0) {
+                Arrays.fill(mFlatLayoutWidths, 0, mFlatTabCount, mTabFixedWidth);
+                mTabOffsetIndex.setWidths(mFlatLayoutWidths, mFlatTabCount, 0);
+            } else if (mTabDistributeColEvenly && mFlatTabCount > 0 && availableWidth > contentWidth) {
+                // 和LinearLayout的weight一样，每个tab一样宽，多出来的像素给前面的tab
+                final int tabWidth = availableWidth / mFlatTabCount;
+                final int remainder = availableWidth % mFlatTabCount;
+                for (int i = 0; i < mFlatTabCount; i++) {
+                    mFlatLayoutWidths[i] = i < remainder ? tabWidth + 1 : tabWidth;
+                }
+                mTabOffsetIndex.setWidths(mFlatLayoutWidths, mFlatTabCount, 0);
+            } else {
+                mTabOffsetIndex.setWidths(mFlatTabWidths, mFlatTabCount, 0);
+            }
+            mTabOffsetIndex.setOrigin(getPaddingLeft());
+            setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+        }
+
+        /**
+         * flat模式下画标题，只画SlidingTabLayout可见区域和这次需要重画的区域内的tab
+         */
+        private void drawFlatTitles(Canvas canvas, int height) {
+            if (mFlatTabCount == 0) {
+                return;
+            }
+            int visibleLeft = SlidingTabLayout.this.getScrollX();
+            int visibleRight = visibleLeft + SlidingTabLayout.this.getWidth();
+            if (canvas.getClipBounds(mFlatClipBounds)) {
+                visibleLeft = Math.max(visibleLeft, mFlatClipBounds.left);
+                visibleRight = Math.min(visibleRight, mFlatClipBounds.right);
+            }
+            if (visibleRight <= visibleLeft) {
+                return;
+            }
+            final int first = mTabOffsetIndex.indexAt(visibleLeft);
+            final int last = Math.min(mTabOffsetIndex.indexAt(visibleRight - 1), mFlatTabCount - 1);
+
+            final TextPaint paint = mFlatTextPaint;
+            final Paint.FontMetricsInt fm = mFlatFontMetrics;
+            // 和TextView的gravity center一样，文字在padding里面居中
+            final int contentTop = getPaddingTop() + mTabTextPaddingTop;
+            final int contentHeight = height - getPaddingBottom() - mTabTextPaddingBottom - contentTop;
+            final float baseline = contentTop + (contentHeight - (fm.bottom - fm.top)) / 2f - fm.top;
+            for (int i = first; i <= last; i++) {
+                final CharSequence title = mTabTitles.get(i);
+                if (title == null) {
+                    continue;
+                }
+                final int contentLeft = getTabLeft(i) + mTabTextPaddingLeft;
+                final int contentWidth = getTabRight(i) - mTabTextPaddingRight - contentLeft;
+                final int state = (i == mSelectedTabPosition ? 1 : 0) | (i == mFlatPressedPosition ? 2 : 0);
+                paint.setColor(mFlatTextColors[state]);
+                canvas.drawText(title, 0, title.length(),
+                        contentLeft + (contentWidth - mFlatTextWidths[i]) / 2f, baseline, paint);
+            }
+        }
+
+        /**
+         * 虚拟化的时候设置tab的数量，之前创建的tab view全部回收
+         */
+        void setVirtualTabCount(int count) {
+            for (int i = 0, z = mVirtualActiveViews.size(); i < z; i++) {
+                recycleVirtualView(mVirtualActiveViews.valueAt(i));
+            }
+            mVirtualActiveViews.clear();
+            removeAllViewsInLayout();
+            mVirtualFirstPosition = 0;
+            mVirtualLastPosition = -1;
+
+            mVirtualTabCount = count;
+            mVirtualTabWidths = new int[count];
+            // 还没有测量过的tab先估算一个宽度，测量之后使用平均宽度
+            mVirtualEstimatedTabWidth = mTabTextPaddingLeft + mTabTextPaddingRight
+                    + mTabTextSize * VIRTUAL_ESTIMATED_TAB_TEXT_LENGTH;
+            computeVirtualTabOffsets();
+            requestLayout();
+            invalidate();
+        }
+
+        /**
+         * 根据tab的宽度重新计算前缀和，没有测量过的tab使用已经测量过的tab的平均宽度
+         */
+        private void computeVirtualTabOffsets() {
+            mVirtualMeasuredCount = 0;
+            mVirtualMeasuredTotal = 0;
+            for (int i = 0; i < mVirtualTabCount; i++) {
+                if (mVirtualTabWidths[i] > 0) {
+                    mVirtualMeasuredCount++;
+                    mVirtualMeasuredTotal += mVirtualTabWidths[i];
+                }
+            }
+            if (mVirtualMeasuredCount > 0) {
+                mVirtualEstimatedTabWidth = mVirtualMeasuredTotal / mVirtualMeasuredCount;
+            }
+            mTabOffsetIndex.setOrigin(getPaddingLeft());
+            mTabOffsetIndex.setWidths(mVirtualTabWidths, mVirtualTabCount, mVirtualEstimatedTabWidth);
+        }
+
+        /**
+         * 测量过的tab的平均宽度和估算的宽度差得太多(超过1/4)的时候，重新估算所有没有测量过的tab，
+         * 否则只有测量过的tab的宽度在前缀和里面更新
+         */
+        private void updateVirtualEstimate() {
+            if (mVirtualMeasuredCount == 0) {
+                return;
+            }
+            int average = mVirtualMeasuredTotal / mVirtualMeasuredCount;
+            if (Math.abs(average - mVirtualEstimatedTabWidth) * 4 > mVirtualEstimatedTabWidth) {
+                computeVirtualTabOffsets();
+            }
+        }
+
+        /**
+         * 虚拟化的时候根据当前的滑动位置创建可见区域内(加上前后几个)的tab，回收其他的tab
+         *
+         * @param scrollX       SlidingTabLayout的scrollX
+         * @param viewportWidth SlidingTabLayout的宽度
+         */
+        void fillVirtualWindow(int scrollX, int viewportWidth) {
+            if (mViewPager == null || mVirtualTabCount == 0 || viewportWidth <= 0) {
+                return;
+            }
+            int first = Math.max(0, mTabOffsetIndex.indexAt(scrollX) - VIRTUAL_OFFSCREEN_TABS);
+            int last = Math.min(mVirtualTabCount - 1,
+                    mTabOffsetIndex.indexAt(scrollX + viewportWidth) + VIRTUAL_OFFSCREEN_TABS);
+            if (first == mVirtualFirstPosition && last == mVirtualLastPosition
+                    && mVirtualActiveViews.size() == last - first + 1) {
+                return;
+            }
+
+            // 回收不在区域内的
+            for (int i = mVirtualActiveViews.size() - 1; i >= 0; i--) {
+                int position = mVirtualActiveViews.keyAt(i);
+                if (position < first || position > last) {
+                    View child = mVirtualActiveViews.valueAt(i);
+                    mVirtualActiveViews.removeAt(i);
+                    removeViewInLayout(child);
+                    recycleVirtualView(child);
+                }
+            }
+
+            // 创建区域内还没有的
+            boolean widthChanged = false;
+            boolean heightOverflow = false;
+            for (int position = first; position <= last; position++) {
+                if (mVirtualActiveViews.get(position) != null) {
+                    continue;
+                }
+                View child = obtainVirtualView();
+                bindTabView(child, position);
+                addViewInLayout(child, -1, child.getLayoutParams(), true);
+                mVirtualActiveViews.put(position, child);
+                widthChanged |= measureVirtualChild(child, position);
+                if (child.getMeasuredHeight() > getHeight() - getPaddingTop() - getPaddingBottom()) {
+                    heightOverflow = true;
+                }
+            }
+            mVirtualFirstPosition = first;
+            mVirtualLastPosition = last;
+
+            if (widthChanged) {
+                // 宽度和估算的不一样，后面的tab位置都变了
+                updateVirtualEstimate();
+            }
+            // 新的tab先按测量的大小放好，这一帧就能画出来
+            layoutVirtualChildren();
+            if (widthChanged || heightOverflow) {
+                // 总宽度或者高度变了，再完整的layout一次
+                requestLayout();
+            }
+            invalidate();
+        }
+
+        private View obtainVirtualView() {
+            int size = mVirtualRecycledViews.size();
+            if (size > 0) {
+                return mVirtualRecycledViews.remove(size - 1);
+            }
+            return createTabView(getTabClickListener());
+        }
+
+        private OnClickListener getTabClickListener() {
+            if (mTabClickListener == null) {
+                mTabClickListener = new TabClickListener();
+            }
+            return mTabClickListener;
+        }
+
+        /**
+         * 虚拟化的时候adapter数据变化了，[start, oldEnd)的tab变成了[start, newEnd)，
+         * 前面不变的tab保留宽度和view，后面的tab保留宽度
+         */
+        void onVirtualTabsChanged(int start, int oldEnd, int newEnd, int newCount) {
+            final int oldCount = mVirtualTabCount;
+            final int recycleEnd = (oldEnd - start == newEnd - start) ? oldEnd : Integer.MAX_VALUE;
+            for (int i = mVirtualActiveViews.size() - 1; i >= 0; i--) {
+                int position = mVirtualActiveViews.keyAt(i);
+                if (position >= start && position < recycleEnd) {
+                    View child = mVirtualActiveViews.valueAt(i);
+                    mVirtualActiveViews.removeAt(i);
+                    removeViewInLayout(child);
+                    recycleVirtualView(child);
+                }
+            }
+
+            int[] widths = new int[newCount];
+            System.arraycopy(mVirtualTabWidths, 0, widths, 0, start);
+            System.arraycopy(mVirtualTabWidths, oldEnd, widths, newEnd, oldCount - oldEnd);
+            mVirtualTabCount = newCount;
+            mVirtualTabWidths = widths;
+            mVirtualFirstPosition = 0;
+            mVirtualLastPosition = -1;
+            computeVirtualTabOffsets();
+            requestLayout();
+            invalidate();
+        }
+
+        /**
+         * adapter数据变化了，[start, oldEnd)的tab变成了[start, newEnd)。
+         * 标题相同的tab直接移动过去，其他的tab重新绑定数据，不够的时候才创建新的tab，
+         * 前后没有变化的tab不会被移除
+         */
+        void applyTabDiff(int start, int oldEnd, int newEnd,
+                          List<CharSequence> oldTitles, List<CharSequence> newTitles) {
+            final int oldMiddle = oldEnd - start;
+            final int newMiddle = newEnd - start;
+            // 后面的tab位置都变了，等下次layout重新记录
+            mTabGeometryCount = Math.min(mTabGeometryCount, start);
+
+            // 把中间的tab拿下来，按标题索引
+            final Map<String, LinkedList<View>> viewsByTitle = new HashMap<>();
+            for (int i = start; i < oldEnd; i++) {
+                String key = String.valueOf(oldTitles.get(i));
+                LinkedList<View> views = viewsByTitle.get(key);
+                if (views == null) {
+                    views = new LinkedList<>();
+                    viewsByTitle.put(key, views);
+                }
+                views.add(getChildAt(i));
+            }
+            detachViewsFromParent(start, oldMiddle);
+
+            // 标题相同的直接移动
+            final View[] newViews = new View[newMiddle];
+            for (int j = 0; j < newMiddle; j++) {
+                LinkedList<View> views = viewsByTitle.get(String.valueOf(newTitles.get(start + j)));
+                if (views != null && !views.isEmpty()) {
+                    newViews[j] = views.removeFirst();
+                }
+            }
+            final List<View> unusedViews = new ArrayList<>();
+            for (LinkedList<View> views : viewsByTitle.values()) {
+                unusedViews.addAll(views);
+            }
+
+            for (int j = 0; j < newMiddle; j++) {
+                View tabView = newViews[j];
+                if (tabView != null) {
+                    attachViewToParent(tabView, start + j, tabView.getLayoutParams());
+                } else if (!unusedViews.isEmpty()) {
+                    // 复用没有匹配上的tab，只需要重新绑定
+                    tabView = unusedViews.remove(unusedViews.size() - 1);
+                    bindTabView(tabView, start + j);
+                    attachViewToParent(tabView, start + j, tabView.getLayoutParams());
+                } else {
+                    tabView = createTabView(getTabClickListener());
+                    bindTabView(tabView, start + j);
+                    addViewInLayout(tabView, start + j, tabView.getLayoutParams(), true);
+                }
+            }
+            for (int i = 0, z = unusedViews.size(); i < z; i++) {
+                removeDetachedView(unusedViews.get(i), false);
+            }
+
+            // 位置变了，ContentDescription和位置的tag也要跟着变
+            for (int i = start, z = getChildCount(); i < z; i++) {
+                View child = getChildAt(i);
+                child.setContentDescription(mContentDescriptions.get(i, null));
+                child.setTag(R.id.sliding_tab_position, i);
+            }
+            requestLayout();
+            invalidate();
+        }
+
+        private void recycleVirtualView(View child) {
+            if (mVirtualRecycledViews.size() < VIRTUAL_MAX_RECYCLED_VIEWS) {
+                child.setSelected(false);
+                child.setPressed(false);
+                mVirtualRecycledViews.add(child);
+            }
+        }
+
+        /**
+         * 测量虚拟化的child
+         *
+         * @return 测量出来的宽度是否和之前的不一样
+         */
+        private boolean measureVirtualChild(View child, int position) {
+            ViewGroup.LayoutParams lp = child.getLayoutParams();
+            int childWidthSpec = cachedWidthSpec(child, getChildMeasureSpec(
+                    MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED), 0, lp.width));
+            int childHeightSpec = getChildMeasureSpec(mVirtualHeightMeasureSpec,
+                    getPaddingTop() + getPaddingBottom(), lp.height);
+            child.measure(childWidthSpec, childHeightSpec);
+            int width = child.getMeasuredWidth();
+            int oldWidth = mVirtualTabWidths[position];
+            if (oldWidth == width) {
+                return false;
+            }
+            if (oldWidth > 0) {
+                mVirtualMeasuredCount--;
+                mVirtualMeasuredTotal -= oldWidth;
+            }
+            if (width > 0) {
+                mVirtualMeasuredCount++;
+                mVirtualMeasuredTotal += width;
+            }
+            mVirtualTabWidths[position] = width;
+            // 只更新这个tab后面的前缀和
+            mTabOffsetIndex.setWidth(position, width > 0 ? width : mVirtualEstimatedTabWidth);
+            return true;
+        }
+
+        private void layoutVirtualChildren() {
+            final int paddingTop = getPaddingTop();
+            for (int i = 0, z = mVirtualActiveViews.size(); i < z; i++) {
+                int position = mVirtualActiveViews.keyAt(i);
+                View child = mVirtualActiveViews.valueAt(i);
+                int left = mTabOffsetIndex.offsetOf(position);
+                child.layout(left, paddingTop, left + child.getMeasuredWidth(),
+                        paddingTop + child.getMeasuredHeight());
+            }
+            invalidateStaticLayer();
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            if (mFlat) {
+                measureFlat(widthMeasureSpec, heightMeasureSpec);
+                return;
+            }
+            if (usesEqualWidthLayout()) {
+                measureEqualWidth(widthMeasureSpec, heightMeasureSpec);
+                return;
+            }
+            if (!mTabVirtualized) {
+                super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+                return;
+            }
+            mVirtualHeightMeasureSpec = heightMeasureSpec;
+            final int paddingHeight = getPaddingTop() + getPaddingBottom();
+            boolean widthChanged = false;
+            int maxChildHeight = 0;
+            for (int i = 0, z = mVirtualActiveViews.size(); i < z; i++) {
+                View child = mVirtualActiveViews.valueAt(i);
+                widthChanged |= measureVirtualChild(child, mVirtualActiveViews.keyAt(i));
+                maxChildHeight = Math.max(maxChildHeight, child.getMeasuredHeight());
+            }
+            if (widthChanged) {
+                updateVirtualEstimate();
+            }
+            mTabOffsetIndex.setOrigin(getPaddingLeft());
+            int width = getPaddingLeft() + mTabOffsetIndex.getTotalWidth() + getPaddingRight();
+            int height = Math.max(maxChildHeight + paddingHeight, getSuggestedMinimumHeight());
+            setMeasuredDimension(resolveSize(Math.max(width, getSuggestedMinimumWidth()), widthMeasureSpec),
+                    resolveSize(height, heightMeasureSpec));
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int l, int t, int r, int b) {
+            if (mFlat) {
+                // 没有child，tab的位置在measure的时候已经确定了
+                invalidateStaticLayer();
+                return;
+            }
+            if (usesEqualWidthLayout()) {
+                layoutEqualWidth();
+                captureTabGeometry();
+                return;
+            }
+            if (!mTabVirtualized) {
+                super.onLayout(changed, l, t, r, b);
+                captureTabGeometry();
+                return;
+            }
+            layoutVirtualChildren();
+        }
+
+        /**
+         * 按内容宽度排列的时候LinearLayout通过这里测量tab，标题宽度已经缓存了的默认tab直接按缓存的宽度测量
+         */
+        @Override
+        protected void measureChildWithMargins(View child, int parentWidthMeasureSpec, int widthUsed,
+                                               int parentHeightMeasureSpec, int heightUsed) {
+            final MarginLayoutParams lp = (MarginLayoutParams) child.getLayoutParams();
+            final int childWidthSpec = cachedWidthSpec(child, getChildMeasureSpec(parentWidthMeasureSpec,
+                    getPaddingLeft() + getPaddingRight() + lp.leftMargin + lp.rightMargin + widthUsed, lp.width));
+            final int childHeightSpec = getChildMeasureSpec(parentHeightMeasureSpec,
+                    getPaddingTop() + getPaddingBottom() + lp.topMargin + lp.bottomMargin + heightUsed, lp.height);
+            child.measure(childWidthSpec, childHeightSpec);
         }
 
-        @Override
-        public void onPageScrollStateChanged(int state) {
-            mScrollState = state;
+        /**
+         * @return 命中标题宽度缓存并且放得下的时候是EXACTLY的宽度，否则是原来的childWidthSpec
+         */
+        private int cachedWidthSpec(View child, int childWidthSpec) {
+            if (MeasureSpec.getMode(childWidthSpec) == MeasureSpec.EXACTLY) {
+                return childWidthSpec;
+            }
+            final int cachedWidth = cachedTabWidth(child);
+            if (cachedWidth < 0 || (MeasureSpec.getMode(childWidthSpec) == MeasureSpec.AT_MOST
+                    && cachedWidth > MeasureSpec.getSize(childWidthSpec))) {
+                return childWidthSpec;
+            }
+            return MeasureSpec.makeMeasureSpec(cachedWidth, MeasureSpec.EXACTLY);
+        }
 
-            for (int i = 0, z = mViewPagerPageChangeListeners.size(); i < z; i++) {
-                ViewPager.OnPageChangeListener listener = mViewPagerPageChangeListeners.get(i);
-                if (listener != null) {
-                    listener.onPageScrollStateChanged(state);
-                }
+        /**
+         * 默认tab的标题宽度已经在后台线程测量过的时候，直接用缓存的宽度加上padding得到tab的宽度，
+         * TextView不需要再测量文字。只有默认的TextView tab并且标题是String的时候才会命中，
+         * 带span等不是String的标题每次都交给TextView测量
+         *
+         * @return wrap_content的时候tab的宽度，没有命中的时候返回-1
+         */
+        private int cachedTabWidth(View child) {
+            if (mTabViewLayoutId != 0 || !(child instanceof TextView)
+                    || child.getLayoutParams().width != ViewGroup.LayoutParams.WRAP_CONTENT) {
+                return -1;
             }
+            final TextView textView = (TextView) child;
+            if (textView.getTransformationMethod() != null || textView.getHint() != null) {
+                return -1;
+            }
+            final float textWidth = TitleWidthCache.get(textView.getText(), textView.getTextSize(),
+                    textView.getTypeface());
+            if (textWidth < 0) {
+                return -1;
+            }
+            final int width = (int) Math.ceil(textWidth)
+                    + textView.getCompoundPaddingLeft() + textView.getCompoundPaddingRight();
+            final Drawable background = textView.getBackground();
+            return background != null ? Math.max(width, background.getMinimumWidth()) : width;
         }
 
-        @Override
-        public void onPageSelected(int position) {
+        /**
+         * @return 是否自己计算平分或者固定宽度的tab，不使用LinearLayout的weight
+         */
+        private boolean usesEqualWidthLayout() {
+            return !mTabVirtualized && (mTabDistributeColEvenly || mTabFixedWidth > 0);
+        }
 
-            if (mScrollState == ViewPager.SCROLL_STATE_IDLE) {
-                mTabStrip.onViewPagerPageChanged(position, 0f);
-                scrollToTab(position, 0);
+        /**
+         * 平分和固定宽度的时候的测量，只测量这次layout之前还没有测量过、并且请求了layout的tab的内容宽度，
+         * 其他的tab直接使用上一次的结果。最终的宽度也在这里计算，layout的时候只摆放位置
+         */
+        private void measureEqualWidth(int widthMeasureSpec, int heightMeasureSpec) {
+            final int paddingHeight = getPaddingTop() + getPaddingBottom();
+            final boolean heightSpecChanged = heightMeasureSpec != mEqualWidthHeightSpec;
+            mEqualWidthHeightSpec = heightMeasureSpec;
+            final int naturalWidthSpec = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+            int contentTotal = 0;
+            int marginTotal = 0;
+            int tabCount = 0;
+            for (int i = 0, z = getChildCount(); i < z; i++) {
+                final View child = getChildAt(i);
+                if (child.getVisibility() == GONE) {
+                    continue;
+                }
+                final LinearLayout.LayoutParams lp = (LinearLayout.LayoutParams) child.getLayoutParams();
+                TabMeasureState state = (TabMeasureState) child.getTag(R.id.sliding_tab_measure_state);
+                if (state == null) {
+                    state = new TabMeasureState();
+                    child.setTag(R.id.sliding_tab_measure_state, state);
+                }
+                final boolean needsMeasure = heightSpecChanged || state.naturalWidth < 0
+                        || (child.isLayoutRequested() && state.layoutPass != mLayoutPass)
+                        || (mTabFixedWidth > 0 && child.getMeasuredWidth() != mTabFixedWidth);
+                if (needsMeasure) {
+                    final int cachedWidth = mTabFixedWidth > 0 ? -1 : cachedTabWidth(child);
+                    if (cachedWidth >= 0) {
+                        // 内容宽度已经知道了，等最终的宽度确定之后只测量一次
+                        state.naturalWidth = cachedWidth;
+                        state.pendingMeasure = true;
+                    } else {
+                        final int childHeightSpec = getChildMeasureSpec(heightMeasureSpec,
+                                paddingHeight + lp.topMargin + lp.bottomMargin, lp.height);
+                        // 固定宽度的时候直接按最终的宽度测量
+                        final int childWidthSpec = mTabFixedWidth > 0
+                                ? MeasureSpec.makeMeasureSpec(mTabFixedWidth, MeasureSpec.EXACTLY)
+                                : getChildMeasureSpec(naturalWidthSpec, 0, lp.width);
+                        child.measure(childWidthSpec, childHeightSpec);
+                        state.naturalWidth = child.getMeasuredWidth();
+                    }
+                    state.layoutPass = mLayoutPass;
+                }
+                contentTotal += state.naturalWidth;
+                marginTotal += lp.leftMargin + lp.rightMargin;
+                tabCount++;
             }
 
-            for (int i = 0; i < mTabStrip.getChildCount(); i++) {
-                mTabStrip.getChildAt(i).setSelected(position == i);
+            int contentWidth = Math.max(getPaddingLeft() + contentTotal + marginTotal + getPaddingRight(),
+                    getSuggestedMinimumWidth());
+            if (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+                // 和HorizontalScrollView的fillViewport一样，这样它不需要再测量一次
+                contentWidth = Math.max(contentWidth, mFillViewportWidth);
             }
-
-            for (int i = 0, z = mViewPagerPageChangeListeners.size(); i < z; i++) {
-                ViewPager.OnPageChangeListener listener = mViewPagerPageChangeListeners.get(i);
-                if (listener != null) {
-                    listener.onPageSelected(position);
+            final int width = resolveSize(contentWidth, widthMeasureSpec);
+            // 固定宽度，或者放得下的时候平分，放不下的时候按内容的宽度
+            final int availableWidth = width - getPaddingLeft() - getPaddingRight() - marginTotal;
+            final boolean distribute = mTabFixedWidth <= 0 && mTabDistributeColEvenly && tabCount > 0
+                    && availableWidth > contentTotal;
+            final int share = distribute ? availableWidth / tabCount : 0;
+            final int remainder = distribute ? availableWidth % tabCount : 0;
+
+            int maxChildHeight = 0;
+            int index = 0;
+            for (int i = 0, z = getChildCount(); i < z; i++) {
+                final View child = getChildAt(i);
+                if (child.getVisibility() == GONE) {
+                    continue;
+                }
+                final LinearLayout.LayoutParams lp = (LinearLayout.LayoutParams) child.getLayoutParams();
+                final TabMeasureState state = (TabMeasureState) child.getTag(R.id.sliding_tab_measure_state);
+                final int childWidth;
+                if (mTabFixedWidth > 0) {
+                    childWidth = mTabFixedWidth;
+                } else if (distribute) {
+                    // 和flat模式一样，多出来的像素给前面的tab
+                    childWidth = index < remainder ? share + 1 : share;
+                } else {
+                    childWidth = state.naturalWidth;
+                }
+                // 只有最终的宽度和已经测量的不一样的tab才按最终的宽度再测量
+                if (state.pendingMeasure || child.getMeasuredWidth() != childWidth) {
+                    child.measure(MeasureSpec.makeMeasureSpec(childWidth, MeasureSpec.EXACTLY),
+                            getChildMeasureSpec(heightMeasureSpec,
+                                    paddingHeight + lp.topMargin + lp.bottomMargin, lp.height));
+                    state.pendingMeasure = false;
                 }
+                maxChildHeight = Math.max(maxChildHeight, child.getMeasuredHeight() + lp.topMargin + lp.bottomMargin);
+                index++;
             }
-        }
 
-    }
+            final int height = resolveSize(Math.max(maxChildHeight + paddingHeight, getSuggestedMinimumHeight()),
+                    heightMeasureSpec);
+            setMeasuredDimension(width, height);
 
-    /**
-     * Tab的点击切换
-     */
-    protected class TabClickListener implements OnClickListener {
-        @Override
-        public void onClick(View v) {
-            for (int i = 0; i < mTabStrip.getChildCount(); i++) {
-                if (v == mTabStrip.getChildAt(i)) {
-                    mViewPager.setCurrentItem(i, mTabViewPagerSmoothScroll);
-                    return;
+            // match_parent的tab要等自己的高度确定之后才知道最终的高度
+            for (int i = 0, z = getChildCount(); i < z; i++) {
+                final View child = getChildAt(i);
+                final LinearLayout.LayoutParams lp = (LinearLayout.LayoutParams) child.getLayoutParams();
+                if (child.getVisibility() == GONE || lp.height != ViewGroup.LayoutParams.MATCH_PARENT) {
+                    continue;
+                }
+                final int childHeight = Math.max(0, height - paddingHeight - lp.topMargin - lp.bottomMargin);
+                if (child.getMeasuredHeight() != childHeight) {
+                    child.measure(MeasureSpec.makeMeasureSpec(child.getMeasuredWidth(), MeasureSpec.EXACTLY),
+                            MeasureSpec.makeMeasureSpec(childHeight, MeasureSpec.EXACTLY));
                 }
             }
         }
-    }
-
-    /**
-     * Allows complete control over the colors drawn in the tab layout. Set with
-     * {@link #setCustomTabColorizer(TabColorizer)}.
-     */
-    public interface TabColorizer {
 
         /**
-         * @return return the color of the indicator used when {@code position} is selected.
+         * 平分和固定宽度的时候按照measure的结果摆放tab，不再测量
          */
-        int getIndicatorColor(int position);
-
-    }
-
-    public class SlidingTabStrip extends LinearLayout {
-
-        private final Paint mRectPaint;
-        private final Paint mLinePaint;
-
-        private int mSelectedPosition;
-
-        private float mSelectionOffset;
-
-        private SlidingTabLayout.TabColorizer mCustomTabColorizer;
-
-        private final SimpleTabColorizer mDefaultTabColorizer;
-
-        SlidingTabStrip(Context context) {
-            this(context, null);
+        private void layoutEqualWidth() {
+            final int paddingTop = getPaddingTop();
+            int left = getPaddingLeft();
+            for (int i = 0, z = getChildCount(); i < z; i++) {
+                final View child = getChildAt(i);
+                if (child.getVisibility() == GONE) {
+                    continue;
+                }
+                final LinearLayout.LayoutParams lp = (LinearLayout.LayoutParams) child.getLayoutParams();
+                final int width = child.getMeasuredWidth();
+                left += lp.leftMargin;
+                final int top = paddingTop + lp.topMargin;
+                child.layout(left, top, left + width, top + child.getMeasuredHeight());
+                left += width + lp.rightMargin;
+            }
+            mLayoutPass++;
         }
 
-        SlidingTabStrip(Context context, AttributeSet attrs) {
-            super(context, attrs);
-            setWillNotDraw(false);
-
-            mRectPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-            mLinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        /**
+         * 保证position的文字宽高已经缓存了
+         *
+         * @return 是否有可用的文字宽高，tab不是TextView或者虚拟化的时候没有创建过的返回false
+         */
+        private boolean ensureTextMetrics(int position) {
+            final int tabCount = getTabCount();
+            if (mTextKeys.length < tabCount) {
+                int capacity = Math.max(tabCount, mTextKeys.length * 2);
+                mTextWidths = copyOf(mTextWidths, capacity);
+                mTextHeights = copyOf(mTextHeights, capacity);
+                mTextSizes = copyOf(mTextSizes, capacity);
+                CharSequence[] keys = new CharSequence[capacity];
+                System.arraycopy(mTextKeys, 0, keys, 0, mTextKeys.length);
+                mTextKeys = keys;
+                Typeface[] typefaces = new Typeface[capacity];
+                System.arraycopy(mTextTypefaces, 0, typefaces, 0, mTextTypefaces.length);
+                mTextTypefaces = typefaces;
+            }
 
-            mDefaultTabColorizer = new SimpleTabColorizer();
-            mDefaultTabColorizer.setIndicatorColors(mTabBottomIndicatorColor);
+            if (mFlat) {
+                // 测量tab宽度的时候已经测量过文字了
+                mTextWidths[position] = mFlatTextWidths[position];
+                mTextHeights[position] = mFlatFontMetrics.bottom - mFlatFontMetrics.top;
+                return true;
+            }
 
+            View tabView = getTabView(position);
+            if (!TextView.class.isInstance(tabView)) {
+                // 虚拟化的时候tab被回收了，使用之前的缓存
+                return mTabVirtualized && tabView == null && mTextKeys[position] != null;
+            }
+            TextView titleTextView = (TextView) tabView;
+            TextPaint paint = titleTextView.getPaint();
+            CharSequence text = titleTextView.getText();
+            if (text != mTextKeys[position] || paint.getTextSize() != mTextSizes[position]
+                    || paint.getTypeface() != mTextTypefaces[position]) {
+                paint.getFontMetrics(mFontMetrics);
+                mTextHeights[position] = mFontMetrics.bottom - mFontMetrics.top;
+                // 后台线程已经测量过的直接使用
+                final float width = TitleWidthCache.get(text, paint.getTextSize(), paint.getTypeface());
+                mTextWidths[position] = width >= 0 ? width : paint.measureText(text, 0, text.length());
+                mTextKeys[position] = text;
+                mTextSizes[position] = paint.getTextSize();
+                mTextTypefaces[position] = paint.getTypeface();
+            }
+            return true;
         }
 
-        void setCustomTabColorizer(SlidingTabLayout.TabColorizer customTabColorizer) {
-            mCustomTabColorizer = customTabColorizer;
-            invalidate();
+        /**
+         * tab的位置变了，文字宽高的缓存全部失效
+         */
+        void invalidateTextMetrics() {
+            Arrays.fill(mTextKeys, null);
         }
 
-        void setSelectedIndicatorColors(int... colors) {
-            // Make sure that the custom colorizer is removed
-            mCustomTabColorizer = null;
-            mDefaultTabColorizer.setIndicatorColors(colors);
-            invalidate();
+        private float[] copyOf(float[] array, int length) {
+            float[] result = new float[length];
+            System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+            return result;
         }
 
         void onViewPagerPageChanged(int position, float positionOffset) {
             mSelectedPosition = position;
             mSelectionOffset = positionOffset;
-            invalidate();
+            // 只刷新indicator上一次画的区域和这一次要画的区域，区域没变就不刷新
+            computeIndicator(mIndicatorBounds);
+            if (mIndicatorBounds.equals(mDrawnIndicatorBounds)) {
+                return;
+            }
+            mIndicatorDirtyRect.set(mDrawnIndicatorBounds);
+            mIndicatorDirtyRect.union(mIndicatorBounds);
+            if (!mIndicatorDirtyRect.isEmpty()) {
+                invalidate(mIndicatorDirtyRect);
+            }
+        }
+
+        /**
+         * 计算当前indicator的左右位置、文字Indicator的大小，
+         * 以及顶部、底部、文字Indicator一起占的区域
+         *
+         * @param outBounds indicator占的区域
+         * @return 是否有indicator需要画
+         */
+        private boolean computeIndicator(Rect outBounds) {
+            outBounds.setEmpty();
+            final int tabCount = getTabCount();
+            if (tabCount == 0 || mSelectedPosition >= tabCount) {
+                return false;
+            }
+            final int height = getHeight();
+            int left = getTabLeft(mSelectedPosition);
+            int right = getTabRight(mSelectedPosition);
+            final boolean hasNext = mSelectionOffset > 0f && mSelectedPosition < (tabCount - 1);
+            if (hasNext) {
+                // Draw the selection partway between the tabs
+                left = TabMath.lerp(left, getTabLeft(mSelectedPosition + 1), mSelectionOffset);
+                right = TabMath.lerp(right, getTabRight(mSelectedPosition + 1), mSelectionOffset);
+            }
+            mIndicatorLeft = left;
+            mIndicatorRight = right;
+
+            if (mTabTopIndicatorHeight > 0) {
+                outBounds.union(left + mTabIndicatorPadding, 0,
+                        right - mTabIndicatorPadding, mTabTopIndicatorHeight);
+            }
+            if (mTabBottomIndicatorHeight > 0) {
+                outBounds.union(left + mTabIndicatorPadding, height - mTabBottomIndicatorHeight,
+                        right - mTabIndicatorPadding, height);
+            }
+
+            mIndicatorHasText = mTabTextIndicatorStroke > 0 && ensureTextMetrics(mSelectedPosition);
+            if (mIndicatorHasText) {
+                float textWidth = mTextWidths[mSelectedPosition];
+                float textHeight = mTextHeights[mSelectedPosition];
+                if (hasNext && ensureTextMetrics(mSelectedPosition + 1)) {
+                    // 滑动的过程中文字的宽高从当前tab过渡到下一个tab
+                    textWidth += mSelectionOffset * (mTextWidths[mSelectedPosition + 1] - textWidth);
+                    textHeight += mSelectionOffset * (mTextHeights[mSelectedPosition + 1] - textHeight);
+                }
+                mIndicatorHalfTextWidth = (int) textWidth / 2;
+                mIndicatorHalfTextHeight = (int) textHeight / 2;
+
+                // 线是有宽度的，再加上线宽
+                final int centerX = (left + right) / 2;
+                final int outsetX = mIndicatorHalfTextWidth + mTabTextIndicatorPaddding + mTabTextIndicatorStroke;
+                final int outsetY = mIndicatorHalfTextHeight + mTabTextIndicatorPaddding + mTabTextIndicatorStroke;
+                outBounds.union(centerX - outsetX, height / 2 - outsetY,
+                        centerX + outsetX, height / 2 + outsetY);
+            }
+            return true;
         }
 
         @Override
         protected void onDraw(Canvas canvas) {
+            if (mTabLayoutMetrics == null && !mTabTraceEnabled) {
+                drawTabStrip(canvas);
+                return;
+            }
+            beginTrace("SlidingTabStrip#onDraw");
+            final long start = System.nanoTime();
+            drawTabStrip(canvas);
+            final long end = System.nanoTime();
+            endTrace();
+            if (mTabLayoutMetrics != null) {
+                mTabLayoutMetrics.onTabStripDrawn(end - start);
+                if (mFirstDrawPending) {
+                    mFirstDrawPending = false;
+                    mTabLayoutMetrics.onFirstDraw(end - mSetViewPagerNanos);
+                }
+            }
+        }
+
+        private void drawTabStrip(Canvas canvas) {
             final int height = getHeight();
-            final int childCount = getChildCount();
+            final int tabCount = getTabCount();
 
             final SlidingTabLayout.TabColorizer tabColorizer =
                     mCustomTabColorizer != null
                             ? mCustomTabColorizer
                             : mDefaultTabColorizer;
 
-            // 顶部Bordor
-            if (mTabTopBorderHeight > 0) {
-                mRectPaint.setColor(mTabTopBorderColor);
-                // 顶部border
-                canvas.drawRect(0, 0, getWidth(), mTabTopBorderHeight,
-                        mRectPaint);
-            }
-            // 底部border
-            if (mTabBottomBorderHeight > 0) {
-                mRectPaint.setColor(mTabBottomBorderColor);
-                canvas.drawRect(0, height - mTabBottomBorderHeight,
-                        getWidth(), height, mRectPaint);
+            // 硬件加速的Canvas在6.0之前不支持drawPicture，直接画
+            final boolean useStaticLayer = mTabStaticLayerCache
+                    && (!canvas.isHardwareAccelerated() || Build.VERSION.SDK_INT >= 23);
+            if (useStaticLayer) {
+                if (mStaticLayer == null) {
+                    mStaticLayer = new Picture();
+                }
+                if (!mStaticLayerValid) {
+                    final Canvas recordingCanvas = mStaticLayer.beginRecording(getWidth(), height);
+                    drawBorders(recordingCanvas, height);
+                    drawDividers(recordingCanvas, height, tabCount);
+                    mStaticLayer.endRecording();
+                    mStaticLayerValid = true;
+                }
+                canvas.drawPicture(mStaticLayer);
+            } else {
+                drawBorders(canvas, height);
             }
 
             // TabIndicator
             // Thick colored underline below the current selection
-            if (childCount > 0) {
-                View selectedTitleView = getChildAt(mSelectedPosition);
-                int left = selectedTitleView.getLeft();
-                int right = selectedTitleView.getRight();
+            if (computeIndicator(mDrawnIndicatorBounds)) {
+                final int left = mIndicatorLeft;
+                final int right = mIndicatorRight;
                 int color = tabColorizer.getIndicatorColor(mSelectedPosition);
 
-                if (mSelectionOffset > 0f && mSelectedPosition < (getChildCount() - 1)) {
+                if (mSelectionOffset > 0f && mSelectedPosition < (tabCount - 1)) {
                     int nextColor = tabColorizer.getIndicatorColor(mSelectedPosition + 1);
                     if (color != nextColor) {
-                        color = blendColors(nextColor, color, mSelectionOffset);
+                        color = gradientColor(color, nextColor, mSelectionOffset);
                     }
-
-                    // Draw the selection partway between the tabs
-                    View nextTitleView = getChildAt(mSelectedPosition + 1);
-                    left = (int) (mSelectionOffset * nextTitleView.getLeft() +
-                            (1.0F - mSelectionOffset) * left);
-                    right = (int) (mSelectionOffset * nextTitleView.getRight() +
-                            (1.0F - mSelectionOffset) * right);
                 }
 
                 if (mTabTopIndicatorHeight > 0) {
@@ -610,62 +3149,76 @@ public class SlidingTabLayout extends HorizontalScrollView {
                             mRectPaint);
                 }
 
-                if (mTabTextIndicatorStroke > 0 && TextView.class.isInstance(selectedTitleView)) {
-                    TextView titleTextView = (TextView) selectedTitleView;
-                    TextPaint paint = titleTextView.getPaint();
-                    Paint.FontMetrics metrics = paint.getFontMetrics();
-                    int textHeight = (int) (metrics.bottom - metrics.top);
-                    int textWidth = (int) paint.measureText(titleTextView.getText().toString());
+                if (mTabTextIndicatorStroke > 0 && mIndicatorHasText) {
+                    final int centerX = (left + right) / 2;
+                    final int halfTextWidth = mIndicatorHalfTextWidth;
+                    final int halfTextHeight = mIndicatorHalfTextHeight;
 
                     // 文字的顶部的Indicator
                     mLinePaint.setStrokeWidth(mTabTextIndicatorStroke);
                     mLinePaint.setColor(mTabTextIndicatorColor);
-                    canvas.drawLine(left + selectedTitleView.getWidth() / 2 - textWidth / 2 - mTabTextIndicatorPaddding,
-                            getHeight() / 2 - textHeight / 2 - mTabTextIndicatorPaddding,
-                            left + selectedTitleView.getWidth() / 2 + textWidth / 2 + mTabTextIndicatorPaddding,
-                            getHeight() / 2 - textHeight / 2 - mTabTextIndicatorPaddding,
+                    canvas.drawLine(centerX - halfTextWidth - mTabTextIndicatorPaddding,
+                            height / 2 - halfTextHeight - mTabTextIndicatorPaddding,
+                            centerX + halfTextWidth + mTabTextIndicatorPaddding,
+                            height / 2 - halfTextHeight - mTabTextIndicatorPaddding,
                             mLinePaint
                     );
 
                     // 文字的底部的Indicator
-                    canvas.drawLine(left + selectedTitleView.getWidth() / 2 - textWidth / 2 - mTabTextIndicatorPaddding,
-                            getHeight() / 2 + textHeight / 2 + mTabTextIndicatorPaddding,
-                            left + selectedTitleView.getWidth() / 2 + textWidth / 2 + mTabTextIndicatorPaddding,
-                            getHeight() / 2 + textHeight / 2 + mTabTextIndicatorPaddding,
+                    canvas.drawLine(centerX - halfTextWidth - mTabTextIndicatorPaddding,
+                            height / 2 + halfTextHeight + mTabTextIndicatorPaddding,
+                            centerX + halfTextWidth + mTabTextIndicatorPaddding,
+                            height / 2 + halfTextHeight + mTabTextIndicatorPaddding,
                             mLinePaint
                     );
 
                 }
             }
 
+            if (!useStaticLayer) {
+                drawDividers(canvas, height, tabCount);
+            }
+
+            if (mFlat) {
+                // 普通模式下标题是child，在onDraw之后画，flat模式也画在最上面
+                drawFlatTitles(canvas, height);
+            }
+        }
+
+        private void drawBorders(Canvas canvas, int height) {
+            // 顶部Bordor
+            if (mTabTopBorderHeight > 0) {
+                mRectPaint.setColor(mTabTopBorderColor);
+                // 顶部border
+                canvas.drawRect(0, 0, getWidth(), mTabTopBorderHeight,
+                        mRectPaint);
+            }
+            // 底部border
+            if (mTabBottomBorderHeight > 0) {
+                mRectPaint.setColor(mTabBottomBorderColor);
+                canvas.drawRect(0, height - mTabBottomBorderHeight,
+                        getWidth(), height, mRectPaint);
+            }
+        }
+
+        private void drawDividers(Canvas canvas, int height, int tabCount) {
             // 分割线
             if (mTabDividerStroke > 0) {
                 final int dividerHeightPx = (int) (Math.min(Math.max(0F, mTabDividerHeightRatio), 1F) * height);
                 // Vertical separators between the titles
                 int separatorTop = (height - dividerHeightPx) / 2;
-                for (int i = 0; i < childCount - 1; i++) {
-                    View child = getChildAt(i);
-                    mLinePaint.setStrokeWidth(mTabDividerStroke);
-                    mLinePaint.setColor(mTabDividerColor);
-                    canvas.drawLine(child.getRight(), separatorTop, child.getRight(),
+                // 虚拟化的时候只画已经创建的tab之间的分割线
+                final boolean virtualized = mTabVirtualized && !mFlat;
+                int first = virtualized ? mVirtualFirstPosition : 0;
+                int last = virtualized ? Math.min(mVirtualLastPosition, tabCount - 2) : tabCount - 2;
+                mLinePaint.setStrokeWidth(mTabDividerStroke);
+                mLinePaint.setColor(mTabDividerColor);
+                for (int i = first; i <= last; i++) {
+                    int tabRight = getTabRight(i);
+                    canvas.drawLine(tabRight, separatorTop, tabRight,
                             separatorTop + dividerHeightPx, mLinePaint);
                 }
             }
-
-        }
-
-        /**
-         * Blend {@code color1} and {@code color2} using the given ratio.
-         *
-         * @param ratio of which to blend. 1.0 will return {@code color1}, 0.5 will give an even blend,
-         *              0.0 will return {@code color2}.
-         */
-        private int blendColors(int color1, int color2, float ratio) {
-            final float inverseRation = 1f - ratio;
-            float r = (Color.red(color1) * ratio) + (Color.red(color2) * inverseRation);
-            float g = (Color.green(color1) * ratio) + (Color.green(color2) * inverseRation);
-            float b = (Color.blue(color1) * ratio) + (Color.blue(color2) * inverseRation);
-            return Color.rgb((int) r, (int) g, (int) b);
         }
 
         /**
@@ -677,7 +3230,7 @@ public class SlidingTabLayout extends HorizontalScrollView {
 
             @Override
             public final int getIndicatorColor(int position) {
-                return mIndicatorColors[position % mIndicatorColors.length];
+                return TabMath.colorAt(mIndicatorColors, position);
             }
 
             void setIndicatorColors(int... colors) {
@@ -695,6 +3248,187 @@ public class SlidingTabLayout extends HorizontalScrollView {
      */
     public void setTabDistributeColEvenly(boolean tabDistributeColEvenly) {
         mTabDistributeColEvenly = tabDistributeColEvenly;
+        mTabStrip.requestLayout();
+    }
+
+    /**
+     * 设置每个tab固定的宽度，优先于平分，虚拟化的时候不生效
+     *
+     * @param tabFixedWidth 宽度(px)，0表示按内容的宽度
+     */
+    public void setTabFixedWidth(int tabFixedWidth) {
+        mTabFixedWidth = tabFixedWidth;
+        mTabStrip.requestLayout();
+    }
+
+    /**
+     * 设置是否只创建可见区域内的tab，tab数量非常多(成百上千)的时候使用，
+     * 需要在{@link #setViewPager(ViewPager)}之前调用
+     *
+     * @param tabVirtualized true，虚拟化，false，一次创建所有的tab
+     */
+    public void setTabVirtualized(boolean tabVirtualized) {
+        mTabVirtualized = tabVirtualized;
+    }
+
+    /**
+     * 设置是否把一帧之内多次的onPageScrolled合并成一次处理，
+     * 高刷新率的设备或者多个SlidingTabLayout绑定同一个ViewPager的时候可以减少重复的滑动和刷新
+     *
+     * @param tabFrameCoalescing true，每帧最多处理一次，false，每次onPageScrolled都处理
+     */
+    public void setTabFrameCoalescing(boolean tabFrameCoalescing) {
+        mTabFrameCoalescing = tabFrameCoalescing;
+    }
+
+    /**
+     * 设置是否缓存border和分割线，缓存之后ViewPager滑动的时候每帧只画一次缓存和indicator。
+     * 主要对软件绘制有用：6.0以上硬件加速的时候drawPicture每帧还是会把录制的命令放进display list，
+     * 6.0以下硬件加速的时候直接画，都没有明显的收益
+     *
+     * @param tabStaticLayerCache true，缓存，false，每帧都重新画
+     */
+    public void setTabStaticLayerCache(boolean tabStaticLayerCache) {
+        mTabStaticLayerCache = tabStaticLayerCache;
+        mTabStrip.redrawStaticLayer();
+    }
+
+    /**
+     * 设置顶部的border
+     *
+     * @param color  颜色
+     * @param height 高度，0表示不画
+     */
+    public void setTabTopBorder(int color, int height) {
+        mTabTopBorderColor = color;
+        mTabTopBorderHeight = height;
+        mTabStrip.redrawStaticLayer();
+    }
+
+    /**
+     * 设置底部的border
+     *
+     * @param color  颜色
+     * @param height 高度，0表示不画
+     */
+    public void setTabBottomBorder(int color, int height) {
+        mTabBottomBorderColor = color;
+        mTabBottomBorderHeight = height;
+        mTabStrip.redrawStaticLayer();
+    }
+
+    /**
+     * 设置tab之间的分割线
+     *
+     * @param color       颜色
+     * @param stroke      宽度，0表示不画
+     * @param heightRatio 分割线的高度和tab高度的比例
+     */
+    public void setTabDivider(int color, int stroke, float heightRatio) {
+        mTabDividerColor = color;
+        mTabDividerStroke = stroke;
+        mTabDividerHeightRatio = heightRatio;
+        mTabStrip.redrawStaticLayer();
+    }
+
+    /**
+     * 设置badge的样式
+     *
+     * @param color     背景颜色
+     * @param textColor 文字颜色
+     * @param textSize  文字大小(px)
+     */
+    public void setTabBadge(int color, int textColor, int textSize) {
+        mTabBadgeColor = color;
+        mTabBadgeTextColor = textColor;
+        mTabBadgeTextSize = textSize;
+        mTabStrip.invalidate();
+    }
+
+    /**
+     * 设置badge最多显示的数字，超过的显示成数字加+，默认99
+     */
+    public void setTabBadgeMaxCount(int tabBadgeMaxCount) {
+        mTabBadgeMaxCount = tabBadgeMaxCount;
+        mTabStrip.invalidateBadgeTexts();
+    }
+
+    /**
+     * @return 开启{@link #setTabFrameCoalescing(boolean)}之后被合并掉的onPageScrolled的次数
+     */
+    public long getCoalescedScrollUpdateCount() {
+        return mCoalescedScrollUpdateCount;
+    }
+
+    /**
+     * 使用{@link #setCustomTabView(int, int)}的时候，是否在后台线程inflate tab，
+     * inflate完成之前先用估算宽度的占位view，后台线程inflate失败的tab回到主线程重新inflate，
+     * 需要在{@link #setViewPager(ViewPager)}之前调用
+     *
+     * @param tabAsyncInflate true，后台线程inflate，false，主线程inflate
+     */
+    public void setTabAsyncInflate(boolean tabAsyncInflate) {
+        mTabAsyncInflate = tabAsyncInflate;
+    }
+
+    /**
+     * 设置是否延迟创建tab：先只创建当前页面附近可见的tab，剩下的在主线程空闲的时候分批创建，
+     * tab较多又不想使用{@link #setTabVirtualized(boolean)}的时候可以加快第一帧，
+     * 需要在{@link #setViewPager(ViewPager)}之前调用
+     *
+     * @param tabLazyPopulate true，延迟创建，false，一次创建所有的tab
+     */
+    public void setTabLazyPopulate(boolean tabLazyPopulate) {
+        mTabLazyPopulate = tabLazyPopulate;
+    }
+
+    /**
+     * 设置是否使用flat模式：不创建tab view，标题按照tab_text_color的选中、按下状态直接画在tab strip上，
+     * 点击按坐标查找tab。只对默认的文字tab生效，tab没有单独的背景，
+     * 无障碍服务看到的是tab strip上按标题提供的虚拟节点(ExploreByTouchHelper)，可以朗读、选中和点击。
+     * 需要在{@link #setViewPager(ViewPager)}之前调用
+     *
+     * @param tabFlat true，flat模式，false，每个tab一个TextView
+     */
+    public void setTabFlat(boolean tabFlat) {
+        mTabFlat = tabFlat;
+    }
+
+    /**
+     * 设置手动滑动tab停下来之后是否对齐到最近的一个tab
+     *
+     * @param tabSnapToTab true，对齐，false，停在哪里就是哪里
+     */
+    public void setTabSnapToTab(boolean tabSnapToTab) {
+        mTabSnapToTab = tabSnapToTab;
+        if (!tabSnapToTab) {
+            removeCallbacks(mSnapRunnable);
+        }
+    }
+
+    /**
+     * 设置所有tab创建完成的回调，异步inflate或者延迟创建的时候在最后一批tab添加之后回调
+     */
+    public void setOnTabsPopulatedListener(OnTabsPopulatedListener listener) {
+        mOnTabsPopulatedListener = listener;
+    }
+
+    /**
+     * 设置性能数据的回调，null表示不统计。
+     * 需要在{@link #setViewPager(ViewPager)}之前设置才能拿到populate和第一次绘制的时间
+     */
+    public void setTabLayoutMetrics(TabLayoutMetrics tabLayoutMetrics) {
+        mTabLayoutMetrics = tabLayoutMetrics;
+        mScrollSessionStartNanos = 0;
+    }
+
+    /**
+     * 设置是否在systrace里面标记populateTabStrip、onDraw和onPageScrolled，4.3以上有效
+     *
+     * @param tabTraceEnabled true，标记，false，不标记
+     */
+    public void setTabTraceEnabled(boolean tabTraceEnabled) {
+        mTabTraceEnabled = tabTraceEnabled;
     }
 
     /**
@@ -717,6 +3451,15 @@ public class SlidingTabLayout extends HorizontalScrollView {
         mTabStrip.setCustomTabColorizer(tabColorizer);
     }
 
+    /**
+     * 设置indicator在两个颜色之间渐变的时候是否使用预先计算好的渐变表，渐变表按两个颜色缓存
+     *
+     * @param tabIndicatorGradientTable true，查表，false，每帧计算
+     */
+    public void setTabIndicatorGradientTable(boolean tabIndicatorGradientTable) {
+        mTabIndicatorGradientTable = tabIndicatorGradientTable;
+    }
+
     /**
      * Sets the colors to be used for indicating the selected tab. These colors are treated as a
      * circular array. Providing one color will mean that all tabs are indicated with the same color.
@@ -735,6 +3478,30 @@ public class SlidingTabLayout extends HorizontalScrollView {
     public void addOnPageChangeListener(ViewPager.OnPageChangeListener listener) {
         if (listener == null) return;
         mViewPagerPageChangeListeners.add(listener);
+        updatePageChangeListenerSnapshot();
+    }
+
+    /**
+     * Remove a listener that was previously added via
+     * {@link #addOnPageChangeListener(ViewPager.OnPageChangeListener)}.
+     */
+    public void removeOnPageChangeListener(ViewPager.OnPageChangeListener listener) {
+        if (mViewPagerPageChangeListeners.remove(listener)) {
+            updatePageChangeListenerSnapshot();
+        }
+    }
+
+    /**
+     * Remove all listeners that are notified of any changes in scroll state or position.
+     */
+    public void clearOnPageChangeListeners() {
+        mViewPagerPageChangeListeners.clear();
+        updatePageChangeListenerSnapshot();
+    }
+
+    private void updatePageChangeListenerSnapshot() {
+        mPageChangeListenerSnapshot = mViewPagerPageChangeListeners.toArray(
+                new ViewPager.OnPageChangeListener[mViewPagerPageChangeListeners.size()]);
     }
 
     /**
@@ -1,13 +1,14 @@
 package com.yong.slidingtablayout;
 
 import android.content.Context;
+import android.database.DataSetObserver;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.support.v4.view.PagerAdapter;
 import android.support.v4.view.ViewPager;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
-
-import java.util.ArrayList;
-import java.util.List;
+import android.view.ViewGroup;
 
 /**
  * <b>Project:</b> com.yong.slidingtablayout.widget <br>
@@ -15,18 +16,106 @@ import java.util.List;
  * <b>Author:</b> qingyong <br>
  * <b>Address:</b> 995722643@qq.com <br>
  * <b>Description:</b> CustomViewPager <br>
- * 解决两个问题：
+ * 解决三个问题：
  * 1.第一次不调用OnPageChangeListener
  * 2.可以设置不允许滑动
+ * 3.adapter实现了{@link PrefetchAdapter}的时候，根据滑动的方向、速度和按下的tab，
+ * 在主线程空闲的时候提前准备马上要滑动到的页面，滑动停下来的时候不用同步创建
  */
 public class SlidingViewPager extends ViewPager {
 
-    private List<OnPageChangeListener> mListeners;
+    /**
+     * 每次主线程空闲的时候预先准备页面的默认时间，超过之后等下一次空闲
+     */
+    private static final long DEFAULT_PREFETCH_BUDGET_NANOS = 4000000L;
+    /**
+     * 每秒滑动超过这么多页的时候多准备一页
+     */
+    private static final float FAST_SCROLL_PAGES_PER_SECOND = 2f;
+    /**
+     * 等待准备的页面最多几个，多出来的时候丢掉最早的
+     */
+    private static final int MAX_PENDING_PREFETCHES = 4;
+    /**
+     * 准备好还没有被使用的页面最多几个，多出来的时候取消最早的
+     */
+    private static final int MAX_PREFETCHED_PAGES = 4;
+
+    /**
+     * 可以在主线程空闲的时候提前准备页面的adapter
+     */
+    public interface PrefetchAdapter {
+
+        /**
+         * 主线程空闲的时候调用，提前准备position的页面(比如inflate并绑定数据)，
+         * 之后instantiateItem的时候直接使用准备好的页面
+         *
+         * @param container 就是SlidingViewPager
+         */
+        void prefetchItem(ViewGroup container, int position);
+
+        /**
+         * position提前准备的页面已经用不上了(滑动的方向变了、换了adapter等)，可以回收或者丢掉
+         */
+        void cancelPrefetch(ViewGroup container, int position);
+
+    }
+
+    /**
+     * 第一次layout的时候需要分发onPageSelected的监听，和ViewPager里面的保持同步。
+     * 重复添加的监听在这里只保存一次，第一次layout的时候也只回调一次
+     */
+    private final PageChangeListenerRegistry mListeners = new PageChangeListenerRegistry();
 
     private boolean isFirstLayout = false;
 
     private boolean enableScroll = true;
 
+    /**
+     * 是否提前准备页面，以及每次空闲的时候最多用多少时间
+     */
+    private boolean mPrefetchEnabled = true;
+    private long mPrefetchBudgetNanos = DEFAULT_PREFETCH_BUDGET_NANOS;
+
+    /**
+     * 等待准备的页面，以及已经准备好还没有被ViewPager创建的页面
+     */
+    private final int[] mPendingPrefetches = new int[MAX_PENDING_PREFETCHES];
+    private int mPendingPrefetchCount;
+    private final int[] mPrefetchedPages = new int[MAX_PREFETCHED_PAGES];
+    private int mPrefetchedPageCount;
+    private boolean mPrefetchScheduled;
+
+    /**
+     * 上一次onPageScrolled的位置、时间和滑动方向，用来判断往哪边滑以及滑得多快
+     */
+    private float mLastScrollPosition;
+    private long mLastScrollNanos;
+    private int mLastScrollDirection;
+    private int mLastCurrentItem = -1;
+
+    private final MessageQueue.IdleHandler mPrefetchIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            return runPendingPrefetches();
+        }
+    };
+
+    /**
+     * 数据变了之后position对应的页面也变了，之前准备的页面全部作废
+     */
+    private final DataSetObserver mAdapterObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            cancelAllPrefetches();
+        }
+
+        @Override
+        public void onInvalidated() {
+            cancelAllPrefetches();
+        }
+    };
+
     public SlidingViewPager(Context context) {
         super(context);
     }
@@ -57,32 +146,237 @@ public class SlidingViewPager extends ViewPager {
     @Override
     public void addOnPageChangeListener(OnPageChangeListener onPageChangeListener) {
         super.addOnPageChangeListener(onPageChangeListener);
-        if (mListeners == null) {
-            mListeners = new ArrayList<>();
-        }
         mListeners.add(onPageChangeListener);
     }
 
+    @Override
+    public void removeOnPageChangeListener(OnPageChangeListener onPageChangeListener) {
+        super.removeOnPageChangeListener(onPageChangeListener);
+        mListeners.remove(onPageChangeListener);
+    }
+
+    @Override
+    public void clearOnPageChangeListeners() {
+        super.clearOnPageChangeListeners();
+        mListeners.clear();
+    }
+
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
         super.onLayout(changed, l, t, r, b);
-        if (isFirstLayout && null != mListeners && !mListeners.isEmpty()) {
-            for (int i = 0, z = mListeners.size(); i < z; i++) {
-                OnPageChangeListener listener = mListeners.get(i);
-                if (listener != null) {
-                    listener.onPageSelected(getCurrentItem());
-                }
-            }
+        if (isFirstLayout && !mListeners.isEmpty()) {
+            // SlidingTabLayout在自己第一次layout之后同步选中的tab，这里补发的回调只是给外部的监听
+            mListeners.onPageSelected(getCurrentItem());
         }
         isFirstLayout = false;
     }
 
     @Override
     public void setAdapter(PagerAdapter adapter) {
+        // 之前的adapter准备好的页面全部作废
+        cancelAllPrefetches();
+        final PagerAdapter oldAdapter = getAdapter();
+        if (oldAdapter != null) {
+            oldAdapter.unregisterDataSetObserver(mAdapterObserver);
+        }
         super.setAdapter(adapter);
+        if (adapter != null) {
+            adapter.registerDataSetObserver(mAdapterObserver);
+        }
         isFirstLayout = true;
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        cancelAllPrefetches();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onPageScrolled(int position, float offset, int offsetPixels) {
+        super.onPageScrolled(position, offset, offsetPixels);
+        if (mPrefetchEnabled && getAdapter() instanceof PrefetchAdapter) {
+            updatePrefetchIntent(position, offset);
+        }
+    }
+
+    /**
+     * 根据这次滑动的方向和速度决定提前准备哪个页面。
+     * 往右滑的时候position + 1正在进入屏幕，停在它上面之后ViewPager需要创建的是再往右offscreenPageLimit个的页面
+     */
+    private void updatePrefetchIntent(int position, float offset) {
+        final int currentItem = getCurrentItem();
+        if (currentItem != mLastCurrentItem) {
+            mLastCurrentItem = currentItem;
+            releaseStalePrefetches(currentItem);
+        }
+
+        final long now = System.nanoTime();
+        final float scrollPosition = position + offset;
+        final float delta = scrollPosition - mLastScrollPosition;
+        final long elapsed = now - mLastScrollNanos;
+        final boolean firstSample = mLastScrollNanos == 0;
+        mLastScrollPosition = scrollPosition;
+        mLastScrollNanos = now;
+        if (firstSample || delta == 0f || elapsed <= 0) {
+            return;
+        }
+
+        final int direction = delta > 0f ? 1 : -1;
+        if (direction != mLastScrollDirection) {
+            // 方向变了，还没有开始准备的页面都不需要了
+            mLastScrollDirection = direction;
+            mPendingPrefetchCount = 0;
+        }
+        final int heading = direction > 0 ? position + 1 : position;
+        final int target = heading + direction * getOffscreenPageLimit();
+        enqueuePrefetch(target);
+        if (Math.abs(delta) * 1000000000f / elapsed > FAST_SCROLL_PAGES_PER_SECOND) {
+            enqueuePrefetch(target + direction);
+        }
+    }
+
+    /**
+     * 提示马上要切换到position(比如按下了对应的tab)，
+     * 在松开之前提前准备position以及它两边offscreenPageLimit个页面
+     */
+    public void prefetchPage(int position) {
+        if (!mPrefetchEnabled || !(getAdapter() instanceof PrefetchAdapter)) {
+            return;
+        }
+        mPendingPrefetchCount = 0;
+        enqueuePrefetch(position);
+        for (int i = 1, limit = getOffscreenPageLimit(); i <= limit; i++) {
+            enqueuePrefetch(position + i);
+            enqueuePrefetch(position - i);
+        }
+    }
+
+    private void enqueuePrefetch(int position) {
+        final PagerAdapter adapter = getAdapter();
+        if (adapter == null || position < 0 || position >= adapter.getCount()
+                || isCreatedByViewPager(position, getCurrentItem())
+                || indexOf(mPendingPrefetches, mPendingPrefetchCount, position) >= 0
+                || indexOf(mPrefetchedPages, mPrefetchedPageCount, position) >= 0) {
+            return;
+        }
+        if (mPendingPrefetchCount == MAX_PENDING_PREFETCHES) {
+            removeAt(mPendingPrefetches, mPendingPrefetchCount--, 0);
+        }
+        mPendingPrefetches[mPendingPrefetchCount++] = position;
+        if (!mPrefetchScheduled) {
+            mPrefetchScheduled = true;
+            Looper.myQueue().addIdleHandler(mPrefetchIdleHandler);
+        }
+    }
+
+    /**
+     * 主线程空闲的时候按顺序准备页面，超过时间之后等下一次空闲
+     *
+     * @return 是否还有没有准备的页面
+     */
+    private boolean runPendingPrefetches() {
+        final PagerAdapter adapter = getAdapter();
+        if (!mPrefetchEnabled || !(adapter instanceof PrefetchAdapter)) {
+            mPendingPrefetchCount = 0;
+            mPrefetchScheduled = false;
+            return false;
+        }
+        final long start = System.nanoTime();
+        while (mPendingPrefetchCount > 0 && System.nanoTime() - start < mPrefetchBudgetNanos) {
+            final int position = mPendingPrefetches[0];
+            removeAt(mPendingPrefetches, mPendingPrefetchCount--, 0);
+            if (position >= adapter.getCount() || isCreatedByViewPager(position, getCurrentItem())) {
+                // 已经过期了，ViewPager自己已经创建了
+                continue;
+            }
+            if (mPrefetchedPageCount == MAX_PREFETCHED_PAGES) {
+                ((PrefetchAdapter) adapter).cancelPrefetch(this, mPrefetchedPages[0]);
+                removeAt(mPrefetchedPages, mPrefetchedPageCount--, 0);
+            }
+            ((PrefetchAdapter) adapter).prefetchItem(this, position);
+            mPrefetchedPages[mPrefetchedPageCount++] = position;
+        }
+        mPrefetchScheduled = mPendingPrefetchCount > 0;
+        return mPrefetchScheduled;
+    }
+
+    /**
+     * 切换页面之后，ViewPager已经创建的页面不再记录，离得太远的取消
+     */
+    private void releaseStalePrefetches(int currentItem) {
+        final PagerAdapter adapter = getAdapter();
+        final int reach = getOffscreenPageLimit() + 2;
+        for (int i = mPrefetchedPageCount - 1; i >= 0; i--) {
+            final int position = mPrefetchedPages[i];
+            if (isCreatedByViewPager(position, currentItem)) {
+                removeAt(mPrefetchedPages, mPrefetchedPageCount--, i);
+            } else if (Math.abs(position - currentItem) > reach) {
+                if (adapter instanceof PrefetchAdapter) {
+                    ((PrefetchAdapter) adapter).cancelPrefetch(this, position);
+                }
+                removeAt(mPrefetchedPages, mPrefetchedPageCount--, i);
+            }
+        }
+    }
+
+    private void cancelAllPrefetches() {
+        if (mPrefetchScheduled) {
+            Looper.myQueue().removeIdleHandler(mPrefetchIdleHandler);
+            mPrefetchScheduled = false;
+        }
+        mPendingPrefetchCount = 0;
+        final PagerAdapter adapter = getAdapter();
+        if (adapter instanceof PrefetchAdapter) {
+            for (int i = 0; i < mPrefetchedPageCount; i++) {
+                ((PrefetchAdapter) adapter).cancelPrefetch(this, mPrefetchedPages[i]);
+            }
+        }
+        mPrefetchedPageCount = 0;
+        mLastScrollNanos = 0;
+        mLastScrollDirection = 0;
+        mLastCurrentItem = -1;
+    }
+
+    /**
+     * @return position是否在ViewPager自己会创建的范围内
+     */
+    private boolean isCreatedByViewPager(int position, int currentItem) {
+        return Math.abs(position - currentItem) <= getOffscreenPageLimit();
+    }
+
+    private static int indexOf(int[] array, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void removeAt(int[] array, int count, int index) {
+        System.arraycopy(array, index + 1, array, index, count - index - 1);
+    }
+
+    /**
+     * 设置adapter实现了{@link PrefetchAdapter}的时候是否在主线程空闲的时候提前准备页面，默认true
+     */
+    public void setPagePrefetchEnabled(boolean prefetchEnabled) {
+        mPrefetchEnabled = prefetchEnabled;
+        if (!prefetchEnabled) {
+            cancelAllPrefetches();
+        }
+    }
+
+    /**
+     * 设置每次主线程空闲的时候最多用多少时间准备页面，一个页面开始准备之后不会被打断，默认4ms
+     *
+     * @param budgetNanos 纳秒
+     */
+    public void setPagePrefetchBudget(long budgetNanos) {
+        mPrefetchBudgetNanos = budgetNanos;
+    }
+
     public boolean enableScrollable() {
         return enableScroll;
     }
@@ -0,0 +1,65 @@
+package com.yong.slidingtablayout;
+
+/**
+ * <b>Project:</b> com.yong.slidingtablayout <br>
+ * <b>Description:</b> SlidingTabLayout的性能数据 <br>
+ * 通过{@link SlidingTabLayout#setTabLayoutMetrics(TabLayoutMetrics)}设置，没有设置的时候不会计时。
+ * 回调都在主线程，时间单位是纳秒，不要在回调里面做耗时的操作
+ */
+public interface TabLayoutMetrics {
+
+    /**
+     * 所有的tab都创建完成，异步inflate的时候包含后台inflate的时间
+     *
+     * @param tabCount      tab的数量
+     * @param durationNanos 从开始populateTabStrip到完成的时间
+     */
+    void onTabStripPopulated(int tabCount, long durationNanos);
+
+    /**
+     * SlidingTabStrip每画一帧回调一次
+     *
+     * @param durationNanos onDraw的时间
+     */
+    void onTabStripDrawn(long durationNanos);
+
+    /**
+     * setViewPager之后第一次画出来
+     *
+     * @param nanosSinceSetViewPager 从setViewPager到第一次onDraw结束的时间
+     */
+    void onFirstDraw(long nanosSinceSetViewPager);
+
+    /**
+     * ViewPager一次滑动(离开SCROLL_STATE_IDLE到回到SCROLL_STATE_IDLE)结束
+     *
+     * @param pageScrolledCount 这次滑动onPageScrolled回调的次数
+     * @param scrollToCount     这次滑动tab调用scrollTo的次数
+     * @param durationNanos     这次滑动的时间，pageScrolledCount除以它就是回调的频率
+     */
+    void onScrollSession(int pageScrolledCount, int scrollToCount, long durationNanos);
+
+    /**
+     * 空实现，只需要部分数据的时候继承它
+     */
+    class SimpleTabLayoutMetrics implements TabLayoutMetrics {
+
+        @Override
+        public void onTabStripPopulated(int tabCount, long durationNanos) {
+        }
+
+        @Override
+        public void onTabStripDrawn(long durationNanos) {
+        }
+
+        @Override
+        public void onFirstDraw(long nanosSinceSetViewPager) {
+        }
+
+        @Override
+        public void onScrollSession(int pageScrolledCount, int scrollToCount, long durationNanos) {
+        }
+
+    }
+
+}
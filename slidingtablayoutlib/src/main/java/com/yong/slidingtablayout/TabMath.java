@@ -0,0 +1,88 @@
+package com.yong.slidingtablayout;
+
+/**
+ * <b>Project:</b> com.yong.slidingtablayout <br>
+ * <b>Description:</b> SlidingTabLayout里面和Android无关的计算 <br>
+ * indicator的位置、tab的滑动位置、颜色的渐变都在这里，不依赖Android的类，
+ * benchmark模块直接在JVM上跑这些方法
+ */
+public final class TabMath {
+
+    private TabMath() {
+    }
+
+    /**
+     * indicator在两个tab之间滑动的时候的位置
+     *
+     * @param from     当前tab的边界
+     * @param to       下一个tab的边界
+     * @param fraction ViewPager的positionOffset
+     */
+    public static int lerp(int from, int to, float fraction) {
+        return (int) (fraction * to + (1.0F - fraction) * from);
+    }
+
+    /**
+     * @return ViewPager滑动了positionOffset的时候tab需要额外滑动的距离
+     */
+    public static int scrollOffset(int tabWidth, float positionOffset) {
+        return (int) (positionOffset * tabWidth);
+    }
+
+    /**
+     * 滑动到tabIndex的时候SlidingTabLayout的scrollX
+     *
+     * @param tabLeft        tab的left
+     * @param positionOffset {@link #scrollOffset(int, float)}
+     * @param titleOffset    前面留出来的距离，第一个tab并且没有滑动的时候不留
+     */
+    public static int scrollTarget(int tabIndex, int tabLeft, int positionOffset, int titleOffset) {
+        int targetScrollX = tabLeft + positionOffset;
+        if (tabIndex > 0 || positionOffset > 0) {
+            // If we're not at the first child and are mid-scroll, make sure we obey the offset
+            targetScrollX -= titleOffset;
+        }
+        return targetScrollX;
+    }
+
+    /**
+     * Blend {@code color1} and {@code color2} using the given ratio, alpha included.
+     *
+     * @param ratio of which to blend. 1.0 will return {@code color1}, 0.5 will give an even blend,
+     *              0.0 will return {@code color2}.
+     */
+    public static int blendArgb(int color1, int color2, float ratio) {
+        final float inverseRation = 1f - ratio;
+        float a = ((color1 >>> 24) * ratio) + ((color2 >>> 24) * inverseRation);
+        float r = (((color1 >> 16) & 0xFF) * ratio) + (((color2 >> 16) & 0xFF) * inverseRation);
+        float g = (((color1 >> 8) & 0xFF) * ratio) + (((color2 >> 8) & 0xFF) * inverseRation);
+        float b = ((color1 & 0xFF) * ratio) + ((color2 & 0xFF) * inverseRation);
+        return ((int) a << 24) | ((int) r << 16) | ((int) g << 8) | (int) b;
+    }
+
+    /**
+     * 从fromColor到toColor的渐变表，第0个是fromColor，最后一个是toColor
+     */
+    public static int[] gradientTable(int fromColor, int toColor, int steps) {
+        final int[] table = new int[steps];
+        for (int i = 0; i < steps; i++) {
+            table[i] = blendArgb(toColor, fromColor, i / (float) (steps - 1));
+        }
+        return table;
+    }
+
+    /**
+     * @return ratio在渐变表里面的下标
+     */
+    public static int gradientIndex(float ratio, int steps) {
+        return (int) (Math.min(Math.max(ratio, 0f), 1f) * (steps - 1) + 0.5f);
+    }
+
+    /**
+     * indicator的颜色循环使用
+     */
+    public static int colorAt(int[] colors, int position) {
+        return colors[position % colors.length];
+    }
+
+}
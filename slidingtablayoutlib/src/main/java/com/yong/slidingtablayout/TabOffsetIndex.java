@@ -0,0 +1,137 @@
+package com.yong.slidingtablayout;
+
+/**
+ * <b>Project:</b> com.yong.slidingtablayout <br>
+ * <b>Description:</b> tab宽度的前缀和 <br>
+ * tab到x坐标O(1)，x坐标到tab二分查找O(log n)。
+ * 一个tab的宽度变了只更新它后面的前缀和，不用重新计算所有的tab。
+ * 不依赖Android的类，benchmark模块可以直接使用
+ */
+public final class TabOffsetIndex {
+
+    private int mCount;
+    private int mOrigin;
+    private int[] mWidths = new int[0];
+    /**
+     * mOffsets[i]是前i个tab的宽度之和，长度至少是mCount + 1
+     */
+    private int[] mOffsets = new int[1];
+
+    /**
+     * 设置所有tab的宽度
+     *
+     * @param widths        宽度，只使用前count个
+     * @param fallbackWidth 宽度小于等于0的tab使用的宽度(还没有测量过的tab)
+     */
+    public void setWidths(int[] widths, int count, int fallbackWidth) {
+        ensureCapacity(count);
+        mCount = count;
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            int width = widths[i] > 0 ? widths[i] : fallbackWidth;
+            mWidths[i] = width;
+            mOffsets[i] = offset;
+            offset += width;
+        }
+        mOffsets[count] = offset;
+    }
+
+    /**
+     * 修改一个tab的宽度，只更新index后面的前缀和
+     *
+     * @return 宽度是否变化了
+     */
+    public boolean setWidth(int index, int width) {
+        final int delta = width - mWidths[index];
+        if (delta == 0) {
+            return false;
+        }
+        mWidths[index] = width;
+        for (int i = index + 1; i <= mCount; i++) {
+            mOffsets[i] += delta;
+        }
+        return true;
+    }
+
+    /**
+     * 第一个tab的left，比如tab strip的paddingLeft
+     */
+    public void setOrigin(int origin) {
+        mOrigin = origin;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public int getWidth(int index) {
+        return mWidths[index];
+    }
+
+    /**
+     * @param index 0到count，等于count的时候是最后一个tab的right
+     * @return tab的left
+     */
+    public int offsetOf(int index) {
+        return mOrigin + mOffsets[index];
+    }
+
+    /**
+     * @return 所有tab的宽度之和
+     */
+    public int getTotalWidth() {
+        return mOffsets[mCount];
+    }
+
+    /**
+     * @return x所在的tab，在第一个tab左边的返回0，在最后一个tab右边的返回count - 1，没有tab返回-1
+     */
+    public int indexAt(int x) {
+        final int target = x - mOrigin;
+        int low = 0;
+        int high = mCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mOffsets[mid] <= target) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high < 0 ? -1 : low;
+    }
+
+    /**
+     * @return left离x最近的tab，没有tab返回-1
+     */
+    public int nearestIndex(int x) {
+        final int index = indexAt(x);
+        if (index < 0 || index == mCount - 1) {
+            return index;
+        }
+        return x - offsetOf(index) > mWidths[index] / 2 ? index + 1 : index;
+    }
+
+    /**
+     * [left, left + width)范围内可见的第一个和最后一个tab
+     *
+     * @param outRange 长度至少是2，没有tab的时候都是-1
+     */
+    public void visibleRange(int left, int width, int[] outRange) {
+        outRange[0] = indexAt(left);
+        outRange[1] = indexAt(left + Math.max(width, 1) - 1);
+    }
+
+    private void ensureCapacity(int count) {
+        if (mWidths.length < count) {
+            int capacity = Math.max(count, mWidths.length * 2);
+            int[] widths = new int[capacity];
+            System.arraycopy(mWidths, 0, widths, 0, mCount);
+            mWidths = widths;
+            int[] offsets = new int[capacity + 1];
+            System.arraycopy(mOffsets, 0, offsets, 0, mCount + 1);
+            mOffsets = offsets;
+        }
+    }
+
+}
@@ -0,0 +1,254 @@
+package com.yong.slidingtablayout;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.support.v4.util.LruCache;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+
+import java.util.WeakHashMap;
+
+/**
+ * <b>Project:</b> com.yong.slidingtablayout <br>
+ * <b>Description:</b> SlidingTabLayout解析之后的style <br>
+ * 不可变，同一个theme下style属性、defStyle和布局里面直接写的属性都一样的时候只解析一次，
+ * 多个SlidingTabLayout共用。Typeface和tab的背景也在这里解析好，创建tab的时候不再去theme里面查找
+ */
+public final class TabStyle {
+
+    /**
+     * 每个theme最多缓存的style数量
+     */
+    private static final int MAX_CACHED_STYLES_PER_THEME = 16;
+
+    /**
+     * theme被回收之后对应的缓存也会被回收
+     */
+    private static final WeakHashMap<Resources.Theme, LruCache<String, TabStyle>> sCache = new WeakHashMap<>();
+
+    final int titleOffset;
+    final boolean distributeColEvenly;
+    final int fixedWidth;
+    final boolean viewPagerSmoothScroll;
+    final boolean virtualized;
+    final boolean frameCoalescing;
+    final boolean staticLayerCache;
+    final boolean indicatorGradientTable;
+    final boolean snapToTab;
+    final boolean flat;
+
+    final int textTypeface;
+    final Typeface typeface;
+    final int textSize;
+    final ColorStateList textColor;
+
+    final int topBorderColor;
+    final int topBorderHeight;
+    final int bottomBorderColor;
+    final int bottomBorderHeight;
+
+    final int topIndicatorColor;
+    final int topIndicatorHeight;
+    final int indicatorPadding;
+    final int bottomIndicatorColor;
+    final int bottomIndicatorHeight;
+
+    final int textIndicatorColor;
+    final int textIndicatorStroke;
+    final int textIndicatorPadding;
+
+    final int dividerColor;
+    final int dividerStroke;
+    final float dividerHeightRatio;
+
+    final int badgeColor;
+    final int badgeTextColor;
+    final int badgeTextSize;
+    final int badgeMaxCount;
+
+    final int textPadding;
+    final int textPaddingLeft;
+    final int textPaddingTop;
+    final int textPaddingRight;
+    final int textPaddingBottom;
+
+    /**
+     * 默认tab的背景(selectableItemBackground)，0表示没有
+     */
+    final int tabBackgroundResId;
+
+    private TabStyle(Context context, TypedArray a) {
+        // 最后一个参数可以设置一个style，为这些属性设置默认值，这个参数就是style的名字
+        // 倒数第二个参数它是一个引用类型的属性，指向一个style，并且在当前的theme中进行设置
+        // 优先级defStyleAttr高，也就是第三个参数高
+        final DisplayMetrics dm = context.getResources().getDisplayMetrics();
+        final Resources.Theme theme = context.getTheme();
+
+        titleOffset = a.getDimensionPixelOffset(R.styleable.YSlidingTabLayout_tab_title_offset, 0);
+        distributeColEvenly = a.getBoolean(R.styleable.YSlidingTabLayout_tab_distribut_col_evenly, false);
+        fixedWidth = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_fixed_width, 0);
+        viewPagerSmoothScroll = a.getBoolean(R.styleable.YSlidingTabLayout_tab_view_pager_smooth_scroll, true);
+        virtualized = a.getBoolean(R.styleable.YSlidingTabLayout_tab_virtualized, false);
+        frameCoalescing = a.getBoolean(R.styleable.YSlidingTabLayout_tab_frame_coalescing, false);
+        staticLayerCache = a.getBoolean(R.styleable.YSlidingTabLayout_tab_static_layer_cache, false);
+        indicatorGradientTable = a.getBoolean(R.styleable.YSlidingTabLayout_tab_indicator_gradient_table, true);
+        snapToTab = a.getBoolean(R.styleable.YSlidingTabLayout_tab_snap_to_tab, false);
+        flat = a.getBoolean(R.styleable.YSlidingTabLayout_tab_flat, false);
+
+        // TextView
+        textTypeface = a.getInt(R.styleable.YSlidingTabLayout_tab_text_type_face, 0);
+        typeface = resolveTypeface(textTypeface);
+        textSize = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_text_size,
+                (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 12, dm));
+        textColor = a.hasValue(R.styleable.YSlidingTabLayout_tab_text_color) ?
+                a.getColorStateList(R.styleable.YSlidingTabLayout_tab_text_color) :
+                ColorStateList.valueOf(Color.BLACK);
+
+        // Border
+        TypedValue outValue = new TypedValue();
+        theme.resolveAttribute(android.R.attr.colorForeground, outValue, true);
+        final int themeForegroundColor = outValue.data;
+        topBorderColor = a.getColor(R.styleable.YSlidingTabLayout_tab_top_border_color,
+                themeForegroundColor);
+        topBorderHeight = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_top_border_height, 0);
+        bottomBorderColor = a.getColor(R.styleable.YSlidingTabLayout_tab_bottom_border_color,
+                themeForegroundColor);
+        bottomBorderHeight = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_bottom_border_height, 0);
+
+        // Indicator
+        topIndicatorColor = a.getColor(R.styleable.YSlidingTabLayout_tab_top_indicator_color, Color.BLUE);
+        topIndicatorHeight = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_top_indicator_height, 0);
+        indicatorPadding = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_indicator_padding, 0);
+        bottomIndicatorColor = a.getColor(R.styleable.YSlidingTabLayout_tab_bottom_indicator_color, Color.BLUE);
+        bottomIndicatorHeight = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_bottom_indicator_height,
+                dp2px(3, dm));
+
+        // TextView的Indicator
+        textIndicatorColor = a.getColor(R.styleable.YSlidingTabLayout_tab_text_indicator_color, Color.DKGRAY);
+        textIndicatorStroke = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_text_indicator_stroke, 0);
+        textIndicatorPadding = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_text_indicator_padding,
+                dp2px(3, dm));
+
+        // Divider
+        dividerColor = a.getColor(R.styleable.YSlidingTabLayout_tab_divider_color, Color.DKGRAY);
+        dividerStroke = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_divider_stroke, 0);
+        dividerHeightRatio = a.getFloat(R.styleable.YSlidingTabLayout_tab_divider_heiht_ratio, 0.5F);
+
+        // Badge
+        badgeColor = a.getColor(R.styleable.YSlidingTabLayout_tab_badge_color, 0xFFF44336);
+        badgeTextColor = a.getColor(R.styleable.YSlidingTabLayout_tab_badge_text_color, Color.WHITE);
+        badgeTextSize = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_badge_text_size,
+                (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 10, dm));
+        badgeMaxCount = a.getInt(R.styleable.YSlidingTabLayout_tab_badge_max_count, 99);
+
+        // padding
+        textPadding = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_text_padding, dp2px(8, dm));
+        textPaddingLeft = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_text_padding_left,
+                textPadding);
+        textPaddingTop = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_text_padding_top,
+                textPadding);
+        textPaddingRight = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_text_padding_right,
+                textPadding);
+        textPaddingBottom = a.getDimensionPixelSize(R.styleable.YSlidingTabLayout_tab_text_padding_bottom,
+                textPadding);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            // If we're running on Honeycomb or newer, then we can use the Theme's
+            // selectableItemBackground to ensure that the View has a pressed state
+            theme.resolveAttribute(android.R.attr.selectableItemBackground, outValue, true);
+            tabBackgroundResId = outValue.resourceId;
+        } else {
+            tabBackgroundResId = 0;
+        }
+    }
+
+    /**
+     * 获取SlidingTabLayout的style，同一个theme下style、defStyle和布局里面直接写的属性都一样的时候只解析一次
+     */
+    public static TabStyle obtain(Context context, AttributeSet attrs, int defStyle) {
+        final Resources.Theme theme = context.getTheme();
+        final String key = cacheKey(attrs, defStyle);
+        synchronized (sCache) {
+            LruCache<String, TabStyle> styles = sCache.get(theme);
+            if (styles == null) {
+                styles = new LruCache<>(MAX_CACHED_STYLES_PER_THEME);
+                sCache.put(theme, styles);
+            }
+            TabStyle style = styles.get(key);
+            if (style == null) {
+                style = resolve(context, attrs, defStyle);
+                styles.put(key, style);
+            }
+            return style;
+        }
+    }
+
+    /**
+     * 直接从已经obtain的TypedArray解析，不缓存，调用的地方负责recycle
+     */
+    static TabStyle from(Context context, TypedArray a) {
+        return new TabStyle(context, a);
+    }
+
+    private static TabStyle resolve(Context context, AttributeSet attrs, int defStyle) {
+        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.YSlidingTabLayout, defStyle, 0);
+        try {
+            return new TabStyle(context, a);
+        } finally {
+            a.recycle();
+        }
+    }
+
+    /**
+     * @return defStyle、style属性，以及布局里面直接写的YSlidingTabLayout属性的名字和值。
+     * 值是引用的时候是资源id，同一个theme下解析的结果一样
+     */
+    private static String cacheKey(AttributeSet attrs, int defStyle) {
+        final StringBuilder key = new StringBuilder().append(defStyle);
+        if (attrs == null) {
+            return key.toString();
+        }
+        key.append('/').append(attrs.getStyleAttribute());
+        final int[] styleable = R.styleable.YSlidingTabLayout;
+        for (int i = 0, z = attrs.getAttributeCount(); i < z; i++) {
+            final int nameRes = attrs.getAttributeNameResource(i);
+            for (int attr : styleable) {
+                if (attr == nameRes) {
+                    key.append('|').append(nameRes).append('=').append(attrs.getAttributeValue(i));
+                    break;
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @param textTypeface tab_text_type_face的值
+     */
+    static Typeface resolveTypeface(int textTypeface) {
+        Typeface typeface;
+        if (textTypeface == 1) {
+            typeface = Typeface.DEFAULT_BOLD;
+        } else if (textTypeface == 2) {
+            typeface = Typeface.SANS_SERIF;
+        } else if (textTypeface == 3) {
+            typeface = Typeface.SERIF;
+        } else if (textTypeface == 4) {
+            typeface = Typeface.MONOSPACE;
+        } else {
+            typeface = Typeface.DEFAULT;
+        }
+        return typeface;
+    }
+
+    private static int dp2px(float dpVal, DisplayMetrics dm) {
+        return (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, dpVal, dm);
+    }
+
+}
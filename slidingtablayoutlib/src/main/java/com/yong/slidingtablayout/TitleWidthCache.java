@@ -0,0 +1,110 @@
+package com.yong.slidingtablayout;
+
+import android.graphics.Typeface;
+import android.support.v4.util.LruCache;
+import android.text.Layout;
+import android.text.TextPaint;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * <b>Project:</b> com.yong.slidingtablayout <br>
+ * <b>Description:</b> tab标题的宽度缓存 <br>
+ * key是(标题, 字号, 字体)，所有的SlidingTabLayout共用。
+ * adapter设置之后在后台线程测量标题的宽度，主线程测量默认的TextView tab、估算tab宽度和画Text Indicator的时候直接使用。
+ * 只缓存String类型的标题，带span等不是String的标题总是不会命中，测量结果和样式有关，还是交给TextView
+ */
+public final class TitleWidthCache {
+
+    /**
+     * 最多缓存的标题数量
+     */
+    private static final int MAX_CACHED_TITLES = 512;
+
+    private static final LruCache<Key, Float> sCache = new LruCache<>(MAX_CACHED_TITLES);
+
+    private TitleWidthCache() {
+    }
+
+    /**
+     * @return 缓存的标题宽度，和TextView wrap_content的时候文字的宽度一样；没有缓存或者不是String的时候返回-1
+     */
+    public static float get(CharSequence title, float textSize, Typeface typeface) {
+        if (!(title instanceof String)) {
+            return -1;
+        }
+        final Float width = sCache.get(new Key((String) title, textSize, typeface));
+        return width != null ? width : -1;
+    }
+
+    /**
+     * 在executor上测量titles里面还没有缓存的标题
+     *
+     * @param paint 和tab的TextView一样的paint，会复制一份在后台线程使用
+     */
+    static void precompute(Executor executor, List<CharSequence> titles, TextPaint paint) {
+        final float textSize = paint.getTextSize();
+        final Typeface typeface = paint.getTypeface();
+        final TextPaint workPaint = new TextPaint(paint);
+        final String[] pending = new String[titles.size()];
+        int count = 0;
+        for (int i = 0, z = titles.size(); i < z; i++) {
+            CharSequence title = titles.get(i);
+            if (title instanceof String && sCache.get(new Key((String) title, textSize, typeface)) == null) {
+                pending[count++] = (String) title;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        final int pendingCount = count;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < pendingCount; i++) {
+                    Key key = new Key(pending[i], textSize, typeface);
+                    if (sCache.get(key) == null) {
+                        sCache.put(key, Layout.getDesiredWidth(pending[i], workPaint));
+                    }
+                }
+            }
+        });
+    }
+
+    private static final class Key {
+
+        private final String title;
+        private final float textSize;
+        private final Typeface typeface;
+
+        Key(String title, float textSize, Typeface typeface) {
+            this.title = title;
+            this.textSize = textSize;
+            this.typeface = typeface;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return textSize == key.textSize && title.equals(key.title)
+                    && (typeface == null ? key.typeface == null : typeface.equals(key.typeface));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = title.hashCode();
+            result = 31 * result + Float.floatToIntBits(textSize);
+            result = 31 * result + (typeface != null ? typeface.hashCode() : 0);
+            return result;
+        }
+
+    }
+
+}
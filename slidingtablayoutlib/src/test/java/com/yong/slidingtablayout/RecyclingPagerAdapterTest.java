@@ -0,0 +1,169 @@
+package com.yong.slidingtablayout;
+
+import android.app.Activity;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * RecyclingPagerAdapter缓存池的命中和未命中次数，以及提前准备的页面在数据变化之后的回收
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 22)
+public class RecyclingPagerAdapterTest {
+
+    private static final int PAGE_COUNT = 50;
+    /**
+     * ViewPager同时保留的页面数量，offscreenPageLimit是1的时候是3
+     */
+    private static final int WINDOW = 3;
+    private static final int PREFETCH_POSITION = 10;
+
+    private Activity mActivity;
+    private FrameLayout mContainer;
+    private TextPageAdapter mAdapter;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+        mContainer = new FrameLayout(mActivity);
+        mAdapter = new TextPageAdapter(PAGE_COUNT);
+    }
+
+    @Test
+    public void destroyedPagesAreReused() {
+        final Object[] pages = new Object[PAGE_COUNT];
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            if (i >= WINDOW) {
+                mAdapter.destroyItem(mContainer, i - WINDOW, pages[i - WINDOW]);
+            }
+            pages[i] = mAdapter.instantiateItem(mContainer, i);
+            assertEquals("Page " + i, ((TextView) pages[i]).getText().toString());
+        }
+
+        assertEquals(WINDOW, mAdapter.getPoolMissCount());
+        assertEquals(PAGE_COUNT - WINDOW, mAdapter.getPoolHitCount());
+        assertEquals(WINDOW, mContainer.getChildCount());
+    }
+
+    @Test
+    public void zeroCapacityDisablesRecycling() {
+        mAdapter.setPoolCapacity(0, 0);
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            mAdapter.destroyItem(mContainer, i, mAdapter.instantiateItem(mContainer, i));
+        }
+
+        assertEquals(PAGE_COUNT, mAdapter.getPoolMissCount());
+        assertEquals(0, mAdapter.getPoolHitCount());
+    }
+
+    @Test
+    public void prefetchedPageIsUsedByInstantiate() {
+        mAdapter.prefetchItem(mContainer, PREFETCH_POSITION);
+        final View prefetched = mAdapter.mLastCreated;
+        mAdapter.resetPoolCounters();
+
+        assertSame(prefetched, mAdapter.instantiateItem(mContainer, PREFETCH_POSITION));
+        assertEquals(0, mAdapter.getPoolMissCount());
+        assertEquals(0, mAdapter.getPoolHitCount());
+    }
+
+    @Test
+    public void dataSetChangeRecyclesPrefetchedPagesAndResetsPager() {
+        final SlidingViewPager viewPager = new SlidingViewPager(mActivity);
+        viewPager.setAdapter(mAdapter);
+        // Robolectric里面创建view很慢，不限制每次空闲的时间
+        viewPager.setPagePrefetchBudget(Long.MAX_VALUE);
+        viewPager.prefetchPage(PREFETCH_POSITION);
+        runIdleHandlers();
+        assertEquals(WINDOW, mAdapter.mPrefetchCount);
+        assertEquals(WINDOW, mAdapter.getPoolMissCount());
+
+        mAdapter.mTitlePrefix = "Changed ";
+        mAdapter.notifyDataSetChanged();
+        mAdapter.resetPoolCounters();
+
+        // 页面回到了缓存池，SlidingViewPager也不再认为这些页面已经准备好了
+        viewPager.prefetchPage(PREFETCH_POSITION);
+        runIdleHandlers();
+        assertEquals(WINDOW * 2, mAdapter.mPrefetchCount);
+        assertEquals(WINDOW, mAdapter.getPoolHitCount());
+        assertEquals(0, mAdapter.getPoolMissCount());
+
+        final TextView page = (TextView) mAdapter.instantiateItem(viewPager, PREFETCH_POSITION);
+        assertEquals("Changed " + PREFETCH_POSITION, page.getText().toString());
+        assertEquals(WINDOW, mAdapter.getPoolHitCount());
+    }
+
+    /**
+     * Robolectric不会执行MessageQueue的IdleHandler，这里手动执行一次
+     */
+    @SuppressWarnings("unchecked")
+    private static void runIdleHandlers() {
+        try {
+            final Field field = MessageQueue.class.getDeclaredField("mIdleHandlers");
+            field.setAccessible(true);
+            final List<MessageQueue.IdleHandler> handlers = (List<MessageQueue.IdleHandler>) field.get(Looper.myQueue());
+            for (MessageQueue.IdleHandler handler : new ArrayList<>(handlers)) {
+                if (!handler.queueIdle()) {
+                    handlers.remove(handler);
+                }
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    static class TextPageAdapter extends RecyclingPagerAdapter {
+
+        private final int mCount;
+        String mTitlePrefix = "Page ";
+        View mLastCreated;
+        int mPrefetchCount;
+
+        TextPageAdapter(int count) {
+            mCount = count;
+        }
+
+        @Override
+        public int getCount() {
+            return mCount;
+        }
+
+        @Override
+        protected View onCreatePageView(ViewGroup container, int viewType) {
+            mLastCreated = new TextView(container.getContext());
+            return mLastCreated;
+        }
+
+        @Override
+        protected void onBindPageView(View view, int position) {
+            ((TextView) view).setText(mTitlePrefix + position);
+        }
+
+        @Override
+        public void prefetchItem(ViewGroup container, int position) {
+            mPrefetchCount++;
+            super.prefetchItem(container, position);
+        }
+
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.yong.slidingtablayout;
+
+import android.app.Activity;
+import android.content.Context;
+import android.view.View;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 第一次显示的时候，选中的tab、indicator和滑动位置只在tab strip第一次layout之后设置一次。
+ * layout之前ViewPager切换页面、SlidingViewPager第一次layout补发onPageSelected都不会让tab重复更新
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 22)
+public class SlidingTabLayoutInitialStateTest {
+
+    private static final int TAB_COUNT = 30;
+    private static final int CURRENT_ITEM = 12;
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 48;
+    private static final int TAB_PADDING = 40;
+
+    private Activity mActivity;
+    private SlidingViewPager mViewPager;
+    private InitialStateTabLayout mTabLayout;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+        mViewPager = new SlidingViewPager(mActivity);
+        mViewPager.setAdapter(new SlidingTabLayoutPerformanceTest.TitleAdapter(TAB_COUNT));
+        mTabLayout = new InitialStateTabLayout(mActivity);
+    }
+
+    @Test
+    public void nothingIsAppliedBeforeFirstLayout() {
+        mTabLayout.setViewPager(mViewPager);
+        mViewPager.setCurrentItem(CURRENT_ITEM);
+
+        assertEquals(0, mTabLayout.mScrollToCount);
+        assertEquals(0, mTabLayout.mSelectedChangeCount);
+    }
+
+    @Test
+    public void initialStateIsAppliedOnceAfterFirstLayout() {
+        mTabLayout.setViewPager(mViewPager);
+        mViewPager.setCurrentItem(CURRENT_ITEM);
+        layoutTabLayout();
+
+        assertEquals(1, mTabLayout.mScrollToCount);
+        assertEquals(1, mTabLayout.mSelectedChangeCount);
+        assertOnlySelected(CURRENT_ITEM);
+        assertTrue(mTabLayout.getScrollX() > 0);
+    }
+
+    @Test
+    public void laterLayoutsAndReplayedSelectionDoNotReapply() {
+        mViewPager.setCurrentItem(CURRENT_ITEM);
+        mTabLayout.setViewPager(mViewPager);
+        layoutTabLayout();
+        final int scrollX = mTabLayout.getScrollX();
+
+        // SlidingViewPager第一次layout的时候补发onPageSelected
+        mViewPager.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY));
+        mViewPager.layout(0, 0, WIDTH, WIDTH);
+        layoutTabLayout();
+
+        assertEquals(1, mTabLayout.mScrollToCount);
+        assertEquals(1, mTabLayout.mSelectedChangeCount);
+        assertEquals(scrollX, mTabLayout.getScrollX());
+        assertOnlySelected(CURRENT_ITEM);
+    }
+
+    @Test
+    public void pageSelectedAfterFirstLayoutUpdatesTabs() {
+        mTabLayout.setViewPager(mViewPager);
+        layoutTabLayout();
+        mViewPager.setCurrentItem(CURRENT_ITEM);
+
+        assertOnlySelected(CURRENT_ITEM);
+    }
+
+    private void layoutTabLayout() {
+        mTabLayout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mTabLayout.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private void assertOnlySelected(int position) {
+        for (int i = 0; i < mTabLayout.mTabStrip.getChildCount(); i++) {
+            assertEquals("tab " + i, i == position, mTabLayout.mTabStrip.getChildAt(i).isSelected());
+        }
+    }
+
+    /**
+     * 记录滑动位置和tab选中状态变化的次数
+     */
+    static class InitialStateTabLayout extends SlidingTabLayout {
+
+        int mScrollToCount;
+        int mSelectedChangeCount;
+
+        InitialStateTabLayout(Context context) {
+            super(context);
+        }
+
+        /**
+         * HorizontalScrollView自己在onLayout里面也会scrollTo到当前位置，只记录真正改变了位置的
+         */
+        @Override
+        public void scrollTo(int x, int y) {
+            if (x != getScrollX() || y != getScrollY()) {
+                mScrollToCount++;
+            }
+            super.scrollTo(x, y);
+        }
+
+        /**
+         * tab足够宽，当前页面的tab需要滑动才能看到
+         */
+        @Override
+        protected TextView createDefaultTabView(Context context) {
+            final TextView textView = new TextView(context) {
+                @Override
+                public void setSelected(boolean selected) {
+                    if (selected != isSelected()) {
+                        mSelectedChangeCount++;
+                    }
+                    super.setSelected(selected);
+                }
+            };
+            textView.setPadding(TAB_PADDING, 0, TAB_PADDING, 0);
+            return textView;
+        }
+
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.yong.slidingtablayout;
+
+import android.app.Activity;
+import android.support.v4.view.ViewPager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 分发的过程中添加或者删除监听，这一次分发的监听不变
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 22)
+public class SlidingTabLayoutPageChangeListenerTest {
+
+    private static final int TAB_COUNT = 5;
+
+    private SlidingViewPager mViewPager;
+    private SlidingTabLayout mTabLayout;
+    private final List<String> mEvents = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        final Activity activity = Robolectric.setupActivity(Activity.class);
+        mViewPager = new SlidingViewPager(activity);
+        mViewPager.setAdapter(new SlidingTabLayoutPerformanceTest.TitleAdapter(TAB_COUNT));
+        mTabLayout = new SlidingTabLayout(activity);
+        mTabLayout.setViewPager(mViewPager);
+    }
+
+    @Test
+    public void listenerRemovingItselfDoesNotSkipTheNext() {
+        mTabLayout.addOnPageChangeListener(new ViewPager.SimpleOnPageChangeListener() {
+            @Override
+            public void onPageSelected(int position) {
+                mEvents.add("first " + position);
+                mTabLayout.removeOnPageChangeListener(this);
+            }
+        });
+        mTabLayout.addOnPageChangeListener(new RecordingListener("second"));
+
+        mViewPager.setCurrentItem(1);
+        mViewPager.setCurrentItem(2);
+
+        assertEquals("[first 1, second 1, second 2]", mEvents.toString());
+    }
+
+    @Test
+    public void listenerAddedDuringDispatchStartsWithTheNextEvent() {
+        mTabLayout.addOnPageChangeListener(new ViewPager.SimpleOnPageChangeListener() {
+            private boolean mAdded;
+
+            @Override
+            public void onPageSelected(int position) {
+                mEvents.add("first " + position);
+                if (!mAdded) {
+                    mAdded = true;
+                    mTabLayout.addOnPageChangeListener(new RecordingListener("added"));
+                }
+            }
+        });
+
+        mViewPager.setCurrentItem(1);
+        mViewPager.setCurrentItem(2);
+
+        assertEquals("[first 1, first 2, added 2]", mEvents.toString());
+    }
+
+    private class RecordingListener extends ViewPager.SimpleOnPageChangeListener {
+
+        private final String mName;
+
+        RecordingListener(String name) {
+            mName = name;
+        }
+
+        @Override
+        public void onPageSelected(int position) {
+            mEvents.add(mName + " " + position);
+        }
+
+    }
+
+}
@@ -0,0 +1,562 @@
+package com.yong.slidingtablayout;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.v4.view.PagerAdapter;
+import android.support.v4.view.ViewPager;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowCanvas;
+import org.robolectric.util.Scheduler;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ViewPager滑动的时候每一帧的开销：分配的内存、invalidate和scrollTo的次数，以及populate创建的tab view数量。
+ * 每个tick是ViewPager的一次fakeDragBy(ViewPager自己分发onPageScrolled)加上一次绘制
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 22)
+public class SlidingTabLayoutPerformanceTest {
+
+    /**
+     * 一直往右拖，WARM_UP_TICKS + TICKS拖不到最后一页
+     */
+    private static final int TAB_COUNT = 120;
+    private static final int WARM_UP_TICKS = 2000;
+    private static final int TICKS = 5000;
+    private static final int TICKS_PER_PAGE = 60;
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 48;
+    private static final int PAGER_HEIGHT = 320;
+    private static final int DRAG_PIXELS_PER_TICK = WIDTH / TICKS_PER_PAGE;
+
+    /**
+     * 每个tick平均分配的字节数上限，一个FontMetrics或者String就会超过
+     */
+    private static final long MAX_ALLOCATED_BYTES_PER_TICK = 8;
+    private static final float MAX_INVALIDATES_PER_TICK = 1f;
+    private static final float MAX_SCROLL_TO_PER_TICK = 1f;
+    /**
+     * populate的开销用创建的tab view数量衡量，Robolectric里面的时间在不同的机器上没法比较。
+     * 虚拟化的时候只创建可见范围附近的tab，WIDTH宽的时候不超过这么多
+     */
+    private static final int POPULATE_TAB_COUNT = 200;
+    private static final int MAX_VIRTUALIZED_TAB_VIEWS = 30;
+    /**
+     * 一帧之内连续设置badge的次数和涉及的tab数量
+     */
+    private static final int BADGE_UPDATES = 1000;
+    private static final int BADGE_TABS = 5;
+    /**
+     * 平分的时候放得下的tab数量
+     */
+    private static final int DISTRIBUTED_TAB_COUNT = 5;
+
+    private Activity mActivity;
+    private SlidingViewPager mViewPager;
+    private CountingSlidingTabLayout mTabLayout;
+    private final AllocationMeter mAllocationMeter = new AllocationMeter();
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+        mViewPager = new SlidingViewPager(mActivity);
+        mViewPager.setAdapter(new TitleAdapter(TAB_COUNT));
+        // ViewPager按添加的顺序分发，这个在SlidingTabLayout(PagerSyncHub)的监听前面
+        mViewPager.addOnPageChangeListener(mAllocationMeter.mDispatchStart);
+
+        mTabLayout = new CountingSlidingTabLayout(mActivity);
+        // 画文字的indicator，onDraw里面会用到文字宽高的缓存
+        mTabLayout.mTabTextIndicatorStroke = 4;
+        mTabLayout.setSelectedIndicatorColors(0xFF3F51B5, 0x80FF4081);
+        mTabLayout.setViewPager(mViewPager);
+
+        final LinearLayout content = new LinearLayout(mActivity);
+        content.setOrientation(LinearLayout.VERTICAL);
+        content.addView(mTabLayout, new LinearLayout.LayoutParams(WIDTH, HEIGHT));
+        content.addView(mViewPager, new LinearLayout.LayoutParams(WIDTH, PAGER_HEIGHT));
+        mActivity.setContentView(content);
+        // attach之后SlidingTabLayout已经绑定了，这个在它后面
+        mViewPager.addOnPageChangeListener(mAllocationMeter.mDispatchEnd);
+
+        content.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT + PAGER_HEIGHT, View.MeasureSpec.EXACTLY));
+        content.layout(0, 0, WIDTH, HEIGHT + PAGER_HEIGHT);
+        mCanvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void pageScrolledDoesNotAllocate() {
+        Assume.assumeTrue(AllocationCounter.isSupported());
+        replay(0, WARM_UP_TICKS);
+
+        // ShadowView.scrollTo扣掉的分配只在这两种模式都关闭的时候成立
+        assertFalse(mTabLayout.isTabFlat() || mTabLayout.mTabVirtualized);
+        mTabLayout.resetCounters();
+        mAllocationMeter.reset();
+        replay(WARM_UP_TICKS, TICKS);
+        final long allocated = mAllocationMeter.mAllocatedBytes - mTabLayout.mShadowScrollToBytes;
+
+        assertTrue("allocated " + allocated + " bytes in " + TICKS + " ticks besides "
+                        + mTabLayout.mScrollToCount + " ShadowView.scrollTo and "
+                        + mAllocationMeter.mCanvasEvents + " ShadowCanvas records",
+                allocated <= MAX_ALLOCATED_BYTES_PER_TICK * TICKS);
+    }
+
+    @Test
+    public void pageScrolledInvalidatesAtMostOncePerTick() {
+        replay(0, WARM_UP_TICKS);
+        mTabLayout.resetCounters();
+        replay(WARM_UP_TICKS, TICKS);
+
+        assertTrue("no invalidate in " + TICKS + " ticks", mTabLayout.mInvalidateCount > 0);
+        assertTrue(mTabLayout.mInvalidateCount + " invalidates in " + TICKS + " ticks",
+                mTabLayout.mInvalidateCount <= MAX_INVALIDATES_PER_TICK * TICKS);
+    }
+
+    @Test
+    public void pageScrolledScrollsAtMostOncePerTick() {
+        replay(0, WARM_UP_TICKS);
+        mTabLayout.resetCounters();
+        replay(WARM_UP_TICKS, TICKS);
+
+        assertTrue("no scrollTo in " + TICKS + " ticks", mTabLayout.mScrollToCount > 0);
+        assertTrue(mTabLayout.mScrollToCount + " scrollTo in " + TICKS + " ticks",
+                mTabLayout.mScrollToCount <= MAX_SCROLL_TO_PER_TICK * TICKS);
+        assertTrue(mTabLayout.mScrollToCount + " scrollTo for " + mTabLayout.mScrollTargetCount + " targets",
+                mTabLayout.mScrollToCount <= mTabLayout.mScrollTargetCount);
+        assertEquals(mTabLayout.mLastScrollToX, mTabLayout.getScrollX());
+    }
+
+    @Test
+    public void populateCreatesOneViewPerTab() {
+        final CountingSlidingTabLayout tabLayout = new CountingSlidingTabLayout(mActivity);
+        tabLayout.setViewPager(newViewPager(POPULATE_TAB_COUNT));
+
+        assertEquals(POPULATE_TAB_COUNT, tabLayout.mTabViewCount);
+        assertEquals(POPULATE_TAB_COUNT, tabLayout.mTabStrip.getChildCount());
+    }
+
+    @Test
+    public void titleChangeRebindsWithoutCreatingViews() {
+        final SlidingViewPager viewPager = newViewPager(POPULATE_TAB_COUNT);
+        final TitleAdapter adapter = (TitleAdapter) viewPager.getAdapter();
+        final CountingSlidingTabLayout tabLayout = new CountingSlidingTabLayout(mActivity);
+        tabLayout.setViewPager(viewPager);
+        final View tabView = tabLayout.mTabStrip.getChildAt(POPULATE_TAB_COUNT / 2);
+        tabLayout.resetCounters();
+
+        adapter.mTitles[POPULATE_TAB_COUNT / 2] = "Changed";
+        adapter.notifyDataSetChanged();
+
+        assertEquals(0, tabLayout.mTabViewCount);
+        assertSame(tabView, tabLayout.mTabStrip.getChildAt(POPULATE_TAB_COUNT / 2));
+        assertEquals("Changed", ((TextView) tabView).getText().toString());
+    }
+
+    @Test
+    public void virtualizedPopulateCreatesOnlyVisibleViews() {
+        final CountingSlidingTabLayout tabLayout = new CountingSlidingTabLayout(mActivity);
+        tabLayout.setTabVirtualized(true);
+        tabLayout.setViewPager(newViewPager(POPULATE_TAB_COUNT));
+        tabLayout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        tabLayout.layout(0, 0, WIDTH, HEIGHT);
+
+        assertTrue(tabLayout.mTabViewCount + " tab views for " + POPULATE_TAB_COUNT + " virtualized tabs",
+                tabLayout.mTabViewCount > 0 && tabLayout.mTabViewCount <= MAX_VIRTUALIZED_TAB_VIEWS);
+    }
+
+    @Test
+    public void badgeBurstIsAppliedOncePerFrameWithoutLayout() {
+        final Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+        scheduler.pause();
+        try {
+            // 画过一帧之后invalidate才会传到parent
+            mTabLayout.drawFrame(mCanvas);
+            mTabLayout.resetCounters();
+            for (int i = 0; i < BADGE_UPDATES; i++) {
+                mTabLayout.setBadge(i % BADGE_TABS, i + 1);
+            }
+            assertEquals("badges applied before the frame", 0, mTabLayout.mInvalidateCount);
+
+            scheduler.advanceToLastPostedRunnable();
+        } finally {
+            scheduler.unPause();
+        }
+        assertTrue("no invalidate for badges", mTabLayout.mInvalidateCount > 0);
+        assertTrue(mTabLayout.mInvalidateCount + " invalidates for " + BADGE_TABS + " badges",
+                mTabLayout.mInvalidateCount <= BADGE_TABS);
+        assertFalse("badge requested layout", mTabLayout.isLayoutRequested());
+        assertEquals(BADGE_UPDATES, mTabLayout.getBadge((BADGE_UPDATES - 1) % BADGE_TABS));
+    }
+
+    @Test
+    public void cachedTitleWidthMeasuresTabsExactly() {
+        final MeasureRecordingSlidingTabLayout tabLayout = new MeasureRecordingSlidingTabLayout(mActivity);
+        tabLayout.setViewPager(newViewPager(TAB_COUNT));
+        tabLayout.precomputeTitles();
+        measureAndLayout(tabLayout);
+
+        for (int i = 0; i < TAB_COUNT; i++) {
+            final MeasureRecordingTextView tabView = (MeasureRecordingTextView) tabLayout.mTabStrip.getChildAt(i);
+            assertEquals("tab " + i + " not measured exactly", 0, tabView.mInexactMeasureCount);
+            assertEquals(1, tabView.mMeasureCount);
+        }
+    }
+
+    @Test
+    public void cachedTitleWidthMeasuresDistributedTabsOnce() {
+        final MeasureRecordingSlidingTabLayout tabLayout = new MeasureRecordingSlidingTabLayout(mActivity);
+        tabLayout.setTabDistributeColEvenly(true);
+        tabLayout.setViewPager(newViewPager(DISTRIBUTED_TAB_COUNT));
+        tabLayout.precomputeTitles();
+        measureAndLayout(tabLayout);
+
+        for (int i = 0; i < DISTRIBUTED_TAB_COUNT; i++) {
+            final MeasureRecordingTextView tabView = (MeasureRecordingTextView) tabLayout.mTabStrip.getChildAt(i);
+            assertEquals("tab " + i + " not measured exactly", 0, tabView.mInexactMeasureCount);
+            assertEquals(1, tabView.mMeasureCount);
+            assertEquals(WIDTH / DISTRIBUTED_TAB_COUNT, tabView.getWidth());
+        }
+    }
+
+    private static void measureAndLayout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private SlidingViewPager newViewPager(int count) {
+        final SlidingViewPager viewPager = new SlidingViewPager(mActivity);
+        viewPager.setAdapter(new TitleAdapter(count));
+        return viewPager;
+    }
+
+    /**
+     * 用fake drag从第一页一页一页往右拖，每页TICKS_PER_PAGE个tick，每次拖动之后画一帧。
+     * 统计ViewPager分发onPageScrolled和绘制的时候分配的内存
+     */
+    private void replay(int fromTick, int ticks) {
+        for (int tick = fromTick, end = fromTick + ticks; tick < end; tick++) {
+            if (tick % TICKS_PER_PAGE == 0) {
+                mViewPager.beginFakeDrag();
+            }
+            mViewPager.fakeDragBy(-DRAG_PIXELS_PER_TICK);
+            mAllocationMeter.drawFrame(mTabLayout, mCanvas);
+            if (tick % TICKS_PER_PAGE == TICKS_PER_PAGE - 1) {
+                mViewPager.endFakeDrag();
+            }
+        }
+    }
+
+    /**
+     * 记录scrollTo和tab strip的invalidate次数
+     */
+    static class CountingSlidingTabLayout extends SlidingTabLayout {
+
+        int mInvalidateCount;
+        int mScrollToCount;
+        int mScrollTargetCount;
+        long mShadowScrollToBytes;
+        int mTabViewCount;
+        private int mLastScrollToX = Integer.MIN_VALUE;
+
+        CountingSlidingTabLayout(Context context) {
+            super(context);
+        }
+
+        void resetCounters() {
+            mInvalidateCount = 0;
+            mScrollToCount = 0;
+            mScrollTargetCount = 0;
+            mShadowScrollToBytes = 0;
+            mTabViewCount = 0;
+            mLastScrollToX = Integer.MIN_VALUE;
+        }
+
+        @Override
+        public ViewParent invalidateChildInParent(int[] location, Rect dirty) {
+            mInvalidateCount++;
+            return super.invalidateChildInParent(location, dirty);
+        }
+
+        /**
+         * 连续两次scrollTo的目标不一样才算一个新的目标
+         */
+        @Override
+        public void scrollTo(int x, int y) {
+            mScrollToCount++;
+            if (x != mLastScrollToX) {
+                mScrollTargetCount++;
+                mLastScrollToX = x;
+            }
+            if (!AllocationCounter.isSupported()) {
+                super.scrollTo(x, y);
+                return;
+            }
+            // Robolectric的ShadowView.scrollTo替换了View.scrollTo：每次都通过反射调用onScrollChanged，
+            // View.onScrollChanged里面的AccessibilityManager.getInstance被ShadowAccessibilityManager替换成
+            // 每次创建一个AccessibilityManagerService并注册ContentObserver，越调用越多。
+            // 不是flat也没有虚拟化的时候SlidingTabLayout.onScrollChanged只调用super，这里的分配都是Robolectric的
+            final long before = AllocationCounter.allocatedBytes();
+            super.scrollTo(x, y);
+            mShadowScrollToBytes += AllocationCounter.allocatedBytes() - before;
+        }
+
+        @Override
+        protected View createTabView(OnClickListener tabClickListener) {
+            mTabViewCount++;
+            return super.createTabView(tabClickListener);
+        }
+
+        /**
+         * 画一帧：dispatchDraw把tab strip标记成已经画过，再画tab strip自己。
+         * tab只在选中状态变化的时候需要重画，这里不画
+         */
+        void drawFrame(Canvas canvas) {
+            dispatchDraw(canvas);
+            mTabStrip.onDraw(canvas);
+        }
+
+    }
+
+    /**
+     * 默认tab换成记录测量次数的TextView，字号、字体和padding都和默认的一样
+     */
+    static class MeasureRecordingSlidingTabLayout extends SlidingTabLayout {
+
+        MeasureRecordingSlidingTabLayout(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected TextView createDefaultTabView(Context context) {
+            final TextView defaultView = super.createDefaultTabView(context);
+            final TextView textView = new MeasureRecordingTextView(context);
+            textView.setGravity(Gravity.CENTER);
+            textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, defaultView.getTextSize());
+            textView.setTypeface(defaultView.getTypeface());
+            textView.setPadding(defaultView.getPaddingLeft(), defaultView.getPaddingTop(),
+                    defaultView.getPaddingRight(), defaultView.getPaddingBottom());
+            textView.setLayoutParams(defaultView.getLayoutParams());
+            return textView;
+        }
+
+        /**
+         * 用tab的paint在当前线程测量所有的标题，相当于后台线程已经测量完了
+         */
+        void precomputeTitles() {
+            final List<CharSequence> titles = new ArrayList<>();
+            final PagerAdapter adapter = mViewPager.getAdapter();
+            for (int i = 0; i < adapter.getCount(); i++) {
+                titles.add(adapter.getPageTitle(i));
+            }
+            final TextView tabView = (TextView) mTabStrip.getChildAt(0);
+            TitleWidthCache.precompute(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            }, titles, tabView.getPaint());
+        }
+
+    }
+
+    static class MeasureRecordingTextView extends TextView {
+
+        int mMeasureCount;
+        int mInexactMeasureCount;
+
+        MeasureRecordingTextView(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            mMeasureCount++;
+            if (MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.EXACTLY) {
+                mInexactMeasureCount++;
+            }
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+
+    }
+
+    /**
+     * 统计SlidingTabLayout处理onPageScrolled和绘制的时候分配的内存。
+     * mDispatchStart和mDispatchEnd加在SlidingTabLayout的监听前后，
+     * ViewPager自己在fake drag里面的分配(MotionEvent、VelocityTracker等)不算
+     */
+    static class AllocationMeter {
+
+        /**
+         * 测量ShadowCanvas一条记录大小的时候画的次数
+         */
+        private static final int CALIBRATION_DRAWS = 1000;
+
+        long mAllocatedBytes;
+        int mCanvasEvents;
+        private long mDispatchStartBytes;
+        private long mRectEventBytes = -1;
+        private long mLineEventBytes = -1;
+
+        final ViewPager.OnPageChangeListener mDispatchStart = new ViewPager.SimpleOnPageChangeListener() {
+            @Override
+            public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+                if (AllocationCounter.isSupported()) {
+                    mDispatchStartBytes = AllocationCounter.allocatedBytes();
+                }
+            }
+        };
+
+        final ViewPager.OnPageChangeListener mDispatchEnd = new ViewPager.SimpleOnPageChangeListener() {
+            @Override
+            public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+                if (AllocationCounter.isSupported()) {
+                    mAllocatedBytes += AllocationCounter.allocatedBytes() - mDispatchStartBytes;
+                }
+            }
+        };
+
+        void reset() {
+            mAllocatedBytes = 0;
+            mCanvasEvents = 0;
+        }
+
+        /**
+         * Robolectric不会真正画到Bitmap上，ShadowCanvas把每次drawRect、drawLine记录成一个对象。
+         * 每画一帧清掉记录，按照记录的条数扣掉这部分分配，其他的分配都算在里面
+         */
+        void drawFrame(CountingSlidingTabLayout tabLayout, Canvas canvas) {
+            final ShadowCanvas shadowCanvas = Shadows.shadowOf(canvas);
+            if (!AllocationCounter.isSupported()) {
+                tabLayout.drawFrame(canvas);
+                shadowCanvas.resetCanvasHistory();
+                return;
+            }
+            if (mRectEventBytes < 0) {
+                calibrate(canvas);
+            }
+            final long before = AllocationCounter.allocatedBytes();
+            tabLayout.drawFrame(canvas);
+            final int rects = shadowCanvas.getRectPaintHistoryCount();
+            final int lines = shadowCanvas.getLinePaintHistoryCount();
+            mAllocatedBytes += AllocationCounter.allocatedBytes() - before
+                    - rects * mRectEventBytes - lines * mLineEventBytes;
+            mCanvasEvents += rects + lines;
+            shadowCanvas.resetCanvasHistory();
+        }
+
+        /**
+         * 测量ShadowCanvas每条drawRect、drawLine记录分配的字节数。
+         * 先画一遍让记录的列表扩容，清掉之后再画的时候只分配记录本身
+         */
+        private void calibrate(Canvas canvas) {
+            final ShadowCanvas shadowCanvas = Shadows.shadowOf(canvas);
+            final Paint paint = new Paint();
+            for (int round = 0; round < 2; round++) {
+                shadowCanvas.resetCanvasHistory();
+                final long rectStart = AllocationCounter.allocatedBytes();
+                for (int i = 0; i < CALIBRATION_DRAWS; i++) {
+                    canvas.drawRect(0, 0, 1, 1, paint);
+                }
+                mRectEventBytes = (AllocationCounter.allocatedBytes() - rectStart) / CALIBRATION_DRAWS;
+                final long lineStart = AllocationCounter.allocatedBytes();
+                for (int i = 0; i < CALIBRATION_DRAWS; i++) {
+                    canvas.drawLine(0, 0, 1, 1, paint);
+                }
+                mLineEventBytes = (AllocationCounter.allocatedBytes() - lineStart) / CALIBRATION_DRAWS;
+            }
+            shadowCanvas.resetCanvasHistory();
+        }
+
+    }
+
+    /**
+     * 当前线程分配的字节数，HotSpot的ThreadMXBean支持
+     */
+    static class AllocationCounter {
+
+        static boolean isSupported() {
+            return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                    .isThreadAllocatedMemorySupported();
+        }
+
+        static long allocatedBytes() {
+            return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+    }
+
+    static class TitleAdapter extends PagerAdapter {
+
+        private final String[] mTitles;
+
+        TitleAdapter(int count) {
+            mTitles = new String[count];
+            for (int i = 0; i < count; i++) {
+                mTitles[i] = "Tab " + i;
+            }
+        }
+
+        @Override
+        public int getCount() {
+            return mTitles.length;
+        }
+
+        @Override
+        public boolean isViewFromObject(View view, Object object) {
+            return view == object;
+        }
+
+        @Override
+        public Object instantiateItem(ViewGroup container, int position) {
+            View view = new View(container.getContext());
+            container.addView(view);
+            return view;
+        }
+
+        @Override
+        public void destroyItem(ViewGroup container, int position, Object object) {
+            container.removeView((View) object);
+        }
+
+        @Override
+        public CharSequence getPageTitle(int position) {
+            return mTitles[position];
+        }
+
+    }
+
+}